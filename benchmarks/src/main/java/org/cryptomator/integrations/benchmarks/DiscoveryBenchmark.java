@@ -0,0 +1,127 @@
+package org.cryptomator.integrations.benchmarks;
+
+import org.cryptomator.integrations.common.IntegrationsLoader;
+import org.cryptomator.integrations.revealpath.RevealPathService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of looking up service providers from a plugin dir containing {@link SyntheticPlugins synthetic plugins}.
+ * <p>
+ * Run with {@code -prof gc} to also measure the allocation rate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DiscoveryBenchmark {
+
+	private static final String PLUGIN_DIR_KEY = "cryptomator.pluginDir";
+
+	@Param({"10", "100", "500"})
+	public int providers;
+
+	private Path pluginDir;
+	private List<Path> jars;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		pluginDir = Files.createTempDirectory("plugins");
+		SyntheticPlugins.generate(pluginDir, providers);
+		try (var files = Files.walk(pluginDir)) {
+			jars = files.filter(file -> file.getFileName().toString().endsWith(".jar")).toList();
+		}
+		System.setProperty(PLUGIN_DIR_KEY, pluginDir.toString());
+		IntegrationsLoader.invalidateCache();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		IntegrationsLoader.invalidateCache();
+		System.clearProperty(PLUGIN_DIR_KEY);
+		SyntheticPlugins.deleteRecursively(pluginDir);
+	}
+
+	/**
+	 * Scans the plugin dir, indexes the modified jars, creates a new class loader and loads, checks and instantiates all providers.
+	 */
+	@Benchmark
+	public List<RevealPathService> coldLoadAll(ModifiedJars modifiedJars) {
+		return IntegrationsLoader.loadAll(RevealPathService.class).toList();
+	}
+
+	/**
+	 * Like {@link #coldLoadAll(ModifiedJars)}, but only until the first available provider has been found.
+	 */
+	@Benchmark
+	public Optional<RevealPathService> coldLoad(ModifiedJars modifiedJars) {
+		return IntegrationsLoader.load(RevealPathService.class);
+	}
+
+	/**
+	 * Rescans the plugin dir on every call and repeats the availability checks and instantiation of all providers, using
+	 * already loaded classes if the jars didn't change since the previous call.
+	 */
+	@Benchmark
+	public List<RevealPathService> uncachedLoadAll() {
+		return IntegrationsLoader.loadAllUncached(RevealPathService.class).toList();
+	}
+
+	/**
+	 * Returns all providers from the cache.
+	 */
+	@Benchmark
+	public List<RevealPathService> warmLoadAll() {
+		return IntegrationsLoader.loadAll(RevealPathService.class).toList();
+	}
+
+	/**
+	 * Returns the best provider from the cache.
+	 */
+	@Benchmark
+	public Optional<RevealPathService> warmLoad() {
+		return IntegrationsLoader.load(RevealPathService.class);
+	}
+
+	/**
+	 * Marks all plugin jars as modified before each invocation, so lookups can't reuse the plugin class loader, its classes
+	 * or any index.
+	 */
+	@State(Scope.Benchmark)
+	public static class ModifiedJars {
+
+		private long modificationTime = System.currentTimeMillis();
+
+		@Setup(Level.Invocation)
+		public void modifyJars(DiscoveryBenchmark benchmark) throws IOException {
+			var time = FileTime.fromMillis(modificationTime += 1000);
+			for (var jar : benchmark.jars) {
+				Files.setLastModifiedTime(jar, time);
+			}
+			IntegrationsLoader.invalidateCache();
+		}
+
+	}
+
+}
@@ -0,0 +1,179 @@
+package org.cryptomator.integrations.benchmarks;
+
+import org.cryptomator.integrations.common.IntegrationsLoader;
+import org.cryptomator.integrations.revealpath.RevealPathService;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+import javax.tools.ToolProvider;
+
+/**
+ * Generates a plugin dir containing synthetic {@link RevealPathService} providers.
+ * <p>
+ * Each provider is compiled into a jar of its own. Providers are spread across ten subdirectories and vary in their
+ * {@code @Priority}, {@code @OperatingSystem} and {@code @CheckAvailability} annotations:
+ * <ul>
+ *     <li>every fourth provider is unrestricted, the others are restricted to Linux, macOS or Windows</li>
+ *     <li>every third provider has a static availability check, every third an instance availability check</li>
+ * </ul>
+ */
+final class SyntheticPlugins {
+
+	private static final String SERVICE = RevealPathService.class.getName();
+	private static final String[] OPERATING_SYSTEMS = {null, "LINUX", "MAC", "WINDOWS"};
+
+	private SyntheticPlugins() {
+	}
+
+	/**
+	 * Compiles the given number of providers and writes them as jars to the given dir.
+	 *
+	 * @param pluginDir Empty target dir
+	 * @param count     Number of providers to generate
+	 * @throws IOException If generating the jars failed
+	 */
+	static void generate(Path pluginDir, int count) throws IOException {
+		var workDir = Files.createTempDirectory("synthetic-plugins");
+		try {
+			var srcDir = workDir.resolve("src");
+			var classesDir = workDir.resolve("classes");
+			var sources = new ArrayList<Path>();
+			for (int i = 0; i < count; i++) {
+				var src = srcDir.resolve(packageName(i).replace('.', '/')).resolve(className(i) + ".java");
+				Files.createDirectories(src.getParent());
+				Files.writeString(src, source(i));
+				sources.add(src);
+			}
+			compile(sources, classesDir);
+			for (int i = 0; i < count; i++) {
+				var jar = pluginDir.resolve("plugin" + (i % 10)).resolve("provider" + i + ".jar");
+				Files.createDirectories(jar.getParent());
+				var classFile = packageName(i).replace('.', '/') + "/" + className(i) + ".class";
+				try (var out = Files.newOutputStream(jar); var builder = JarBuilder.withTarget(out); var in = Files.newInputStream(classesDir.resolve(classFile))) {
+					builder.addFile(classFile, in);
+					builder.addFile("META-INF/services/" + SERVICE, new ByteArrayInputStream(qualifiedName(i).getBytes(StandardCharsets.UTF_8)));
+				}
+			}
+		} finally {
+			deleteRecursively(workDir);
+		}
+	}
+
+	static void deleteRecursively(Path dir) throws IOException {
+		try (Stream<Path> files = Files.walk(dir)) {
+			files.sorted(Comparator.reverseOrder()).forEach(path -> {
+				try {
+					Files.delete(path);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		}
+	}
+
+	private static String packageName(int i) {
+		return "com.example.plugin" + i;
+	}
+
+	private static String className(int i) {
+		return "Provider" + i;
+	}
+
+	private static String qualifiedName(int i) {
+		return packageName(i) + "." + className(i);
+	}
+
+	private static String source(int i) {
+		var os = OPERATING_SYSTEMS[i % OPERATING_SYSTEMS.length];
+		var staticCheck = i % 3 == 1;
+		var instanceCheck = i % 3 == 2;
+		var sb = new StringBuilder();
+		sb.append("package ").append(packageName(i)).append(";\n");
+		sb.append("import org.cryptomator.integrations.common.*;\n");
+		sb.append("@Priority(").append(i * 7 % 100).append(")\n");
+		if (os != null) {
+			sb.append("@OperatingSystem(OperatingSystem.Value.").append(os).append(")\n");
+		}
+		if (staticCheck || instanceCheck) {
+			sb.append("@CheckAvailability\n");
+		}
+		sb.append("public class ").append(className(i)).append(" implements ").append(SERVICE).append(" {\n");
+		if (staticCheck) {
+			sb.append("\t@CheckAvailability public static boolean isAvailable() { return true; }\n");
+		}
+		if (instanceCheck) {
+			sb.append("\t@CheckAvailability public boolean isReady() { return true; }\n");
+		}
+		sb.append("\t@Override public void reveal(java.nio.file.Path p) {}\n");
+		sb.append("\t@Override public boolean isSupported() { return true; }\n");
+		sb.append("}\n");
+		return sb.toString();
+	}
+
+	private static void compile(List<Path> sources, Path classesDir) throws IOException {
+		var compiler = ToolProvider.getSystemJavaCompiler();
+		if (compiler == null) {
+			throw new IllegalStateException("Generating plugins requires a JDK.");
+		}
+		Path apiJar;
+		try {
+			apiJar = Path.of(IntegrationsLoader.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+		} catch (URISyntaxException e) {
+			throw new IllegalStateException("Failed to locate integrations-api", e);
+		}
+		var args = new ArrayList<String>(List.of("-proc:none", "-cp", apiJar.toString(), "-d", classesDir.toString()));
+		sources.stream().map(Path::toString).forEach(args::add);
+		if (compiler.run(null, null, null, args.toArray(String[]::new)) != 0) {
+			throw new IllegalStateException("Failed to compile synthetic plugins");
+		}
+	}
+
+	/**
+	 * Writes jar files, equivalent to the {@code JarBuilder} used in the tests of the integrations-api.
+	 */
+	private static final class JarBuilder implements AutoCloseable {
+
+		private final Manifest manifest = new Manifest();
+		private final JarOutputStream jos;
+
+		private JarBuilder(JarOutputStream jos) {
+			this.jos = jos;
+			manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		}
+
+		static JarBuilder withTarget(OutputStream out) throws IOException {
+			return new JarBuilder(new JarOutputStream(out));
+		}
+
+		void addFile(String path, InputStream content) throws IOException {
+			jos.putNextEntry(new JarEntry(path));
+			content.transferTo(jos);
+			jos.closeEntry();
+		}
+
+		@Override
+		public void close() throws IOException {
+			jos.putNextEntry(new JarEntry(JarFile.MANIFEST_NAME));
+			manifest.write(jos);
+			jos.closeEntry();
+			jos.finish(); // don't close the underlying stream, it's owned by the caller
+		}
+	}
+
+}
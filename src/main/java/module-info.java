@@ -11,6 +11,8 @@ import org.cryptomator.integrations.update.UpdateMechanism;
 
 module org.cryptomator.integrations.api {
 	requires static org.jetbrains.annotations;
+	requires static java.compiler;
+	requires static jdk.jfr;
 	requires org.slf4j;
 	requires com.fasterxml.jackson.databind;
 	requires java.net.http;
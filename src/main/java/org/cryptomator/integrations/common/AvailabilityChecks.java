@@ -0,0 +1,197 @@
+package org.cryptomator.integrations.common;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@link CheckAvailability} methods of a provider class, resolved once per class into method handles.
+ * <p>
+ * Methods are taken from the {@link ProviderIndex} if available and discovered via reflection otherwise.
+ */
+final class AvailabilityChecks {
+
+	private static final MethodType STATIC_CHECK = MethodType.methodType(boolean.class);
+	private static final MethodType INSTANCE_CHECK = MethodType.methodType(boolean.class, Object.class);
+	private static final AtomicLong EPOCH = new AtomicLong();
+	private static final ClassValue<AvailabilityChecks> CACHE = new ClassValue<>() {
+		@Override
+		protected AvailabilityChecks computeValue(Class<?> type) {
+			return resolve(type);
+		}
+	};
+
+	private final boolean requiresStaticChecks;
+	private final boolean requiresInstanceChecks;
+	private final boolean accessible;
+	private final Check[] staticChecks;
+	private final Check[] instanceChecks;
+
+	private AvailabilityChecks(boolean requiresStaticChecks, boolean requiresInstanceChecks, boolean accessible, Check[] staticChecks, Check[] instanceChecks) {
+		this.requiresStaticChecks = requiresStaticChecks;
+		this.requiresInstanceChecks = requiresInstanceChecks;
+		this.accessible = accessible;
+		this.staticChecks = staticChecks;
+		this.instanceChecks = instanceChecks;
+	}
+
+	/**
+	 * Gets the availability checks of the given class.
+	 *
+	 * @param type A provider class
+	 * @return The (cached) availability checks
+	 * @throws IllegalStateException If the checks can not be resolved
+	 */
+	static AvailabilityChecks of(Class<?> type) throws IllegalStateException {
+		return CACHE.get(type);
+	}
+
+	/**
+	 * Discards all cached results of {@link CheckAvailability#cacheSeconds() cacheable} checks.
+	 */
+	static void invalidateResults() {
+		EPOCH.incrementAndGet();
+	}
+
+	/**
+	 * @param isStatic Whether to consider static or instance checks
+	 * @return {@code true} if the availability of the provider needs to be checked
+	 */
+	boolean isRequired(boolean isStatic) {
+		return isStatic ? requiresStaticChecks : requiresInstanceChecks;
+	}
+
+	/**
+	 * @return {@code false} if the class is not exported to this module, i.e. checks can not be invoked
+	 */
+	boolean isAccessible() {
+		return accessible;
+	}
+
+	/**
+	 * @param isStatic Whether to get static or instance checks
+	 * @return The checks to run. Must not be modified.
+	 */
+	Check[] get(boolean isStatic) {
+		return isStatic ? staticChecks : instanceChecks;
+	}
+
+	private static AvailabilityChecks resolve(Class<?> type) {
+		var indexed = ProviderIndex.lookup(type);
+		boolean requiresStaticChecks, requiresInstanceChecks;
+		if (indexed.isPresent()) {
+			requiresStaticChecks = !indexed.get().staticChecks().isEmpty();
+			requiresInstanceChecks = !indexed.get().instanceChecks().isEmpty();
+		} else {
+			requiresStaticChecks = requiresInstanceChecks = type.isAnnotationPresent(CheckAvailability.class);
+		}
+		if (!requiresStaticChecks && !requiresInstanceChecks) {
+			return new AvailabilityChecks(false, false, true, new Check[0], new Check[0]);
+		}
+		if (!type.getModule().isExported(type.getPackageName(), AvailabilityChecks.class.getModule())) {
+			return new AvailabilityChecks(requiresStaticChecks, requiresInstanceChecks, false, new Check[0], new Check[0]);
+		}
+		AvailabilityChecks.class.getModule().addReads(type.getModule()); // required by method handles, implicit in core reflection
+		var staticChecks = requiresStaticChecks ? resolve(type, indexed.map(e -> e.staticChecks()).orElse(null), true) : new Check[0];
+		var instanceChecks = requiresInstanceChecks ? resolve(type, indexed.map(e -> e.instanceChecks()).orElse(null), false) : new Check[0];
+		return new AvailabilityChecks(requiresStaticChecks, requiresInstanceChecks, true, staticChecks, instanceChecks);
+	}
+
+	private static Check[] resolve(Class<?> type, @Nullable List<String> indexedMethodNames, boolean isStatic) {
+		var methods = indexedMethodNames != null //
+				? indexedMethodNames.stream().map(name -> getMethod(type, name)) //
+				: Arrays.stream(type.getMethods()).filter(m -> isAvailabilityCheck(m, isStatic));
+		return methods.map(m -> new Check(m.getDeclaringClass(), m.getName(), unreflect(m, isStatic), ttl(m))).toArray(Check[]::new);
+	}
+
+	private static Method getMethod(Class<?> type, String name) {
+		try {
+			return type.getMethod(name);
+		} catch (NoSuchMethodException e) {
+			throw new IllegalStateException("Provider index out of date: Missing method " + type.getName() + "#" + name, e);
+		}
+	}
+
+	private static MethodHandle unreflect(Method m, boolean isStatic) {
+		try {
+			return MethodHandles.lookup().unreflect(m).asType(isStatic ? STATIC_CHECK : INSTANCE_CHECK);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException("Can't access @CheckAvailability test " + m.getDeclaringClass().getName() + "#" + m.getName(), e);
+		}
+	}
+
+	private static long ttl(Method m) {
+		var annotation = m.getAnnotation(CheckAvailability.class);
+		return annotation == null ? 0L : TimeUnit.SECONDS.toNanos(Math.max(0L, annotation.cacheSeconds()));
+	}
+
+	private static boolean isAvailabilityCheck(Method m, boolean isStatic) {
+		return m.isAnnotationPresent(CheckAvailability.class)
+				&& Boolean.TYPE.equals(m.getReturnType())
+				&& m.getParameterCount() == 0
+				&& Modifier.isStatic(m.getModifiers()) == isStatic;
+	}
+
+	/**
+	 * A single availability check, optionally caching its result.
+	 */
+	static final class Check {
+
+		private final Class<?> declaringClass;
+		private final String name;
+		private final MethodHandle handle;
+		private final long ttlNanos;
+		private volatile CachedResult cachedResult;
+
+		/**
+		 * @param declaringClass The class declaring the check method
+		 * @param name           The name of the check method
+		 * @param handle         A handle of type {@code ()boolean} for static or {@code (Object)boolean} for instance checks
+		 * @param ttlNanos       Time to live of a cached result, {@code 0} to disable caching
+		 */
+		Check(Class<?> declaringClass, String name, MethodHandle handle, long ttlNanos) {
+			this.declaringClass = declaringClass;
+			this.name = name;
+			this.handle = handle;
+			this.ttlNanos = ttlNanos;
+		}
+
+		Class<?> declaringClass() {
+			return declaringClass;
+		}
+
+		String name() {
+			return name;
+		}
+
+		boolean test(@Nullable Object instance) throws Throwable {
+			if (ttlNanos == 0) {
+				return invoke(instance);
+			}
+			var cached = cachedResult;
+			if (cached != null && cached.epoch == EPOCH.get() && System.nanoTime() - cached.timestamp < ttlNanos) {
+				return cached.result;
+			}
+			var epoch = EPOCH.get();
+			var result = invoke(instance);
+			cachedResult = new CachedResult(result, System.nanoTime(), epoch);
+			return result;
+		}
+
+		private boolean invoke(@Nullable Object instance) throws Throwable {
+			return instance == null ? (boolean) handle.invokeExact() : (boolean) handle.invokeExact(instance);
+		}
+	}
+
+	private record CachedResult(boolean result, long timestamp, long epoch) {
+	}
+
+}
@@ -0,0 +1,91 @@
+package org.cryptomator.integrations.common;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.ServiceLoader;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A service provider found by a {@link ServiceLoader}, keeping track of its evaluation by the {@link IntegrationsLoader}.
+ *
+ * @param <T> Type of the service
+ */
+final class Candidate<T> {
+
+	private final Class<T> service;
+	private final ServiceLoader.Provider<T> provider;
+	private final int priority;
+	private final long classLoadingNanos;
+	private final @Nullable SharedClassLoader lease;
+	private final @Nullable DiscoveryListener recorder;
+	private final AtomicBoolean completed = new AtomicBoolean();
+	volatile long staticCheckNanos; // written by the evaluating thread, possibly read by a watchdog
+	volatile long instantiationNanos;
+	volatile long instanceCheckNanos;
+
+	/**
+	 * @param service           Service class
+	 * @param provider          The provider found by the service loader
+	 * @param priority          The priority of the provider
+	 * @param classLoadingNanos Time spent loading the provider class
+	 * @param lease             The plugin class loader that loaded the provider, if any, which gets retained by the provider instance
+	 * @param recorder          Records the evaluation along with the cached discovery, if any
+	 */
+	Candidate(Class<T> service, ServiceLoader.Provider<T> provider, int priority, long classLoadingNanos, @Nullable SharedClassLoader lease, @Nullable DiscoveryListener recorder) {
+		this.service = service;
+		this.provider = provider;
+		this.priority = priority;
+		this.classLoadingNanos = classLoadingNanos;
+		this.lease = lease;
+		this.recorder = recorder;
+	}
+
+	Class<T> service() {
+		return service;
+	}
+
+	ServiceLoader.Provider<T> provider() {
+		return provider;
+	}
+
+	int priority() {
+		return priority;
+	}
+
+	/**
+	 * Finishes the evaluation and publishes its result.
+	 * <p>
+	 * Only the first invocation takes effect. If the evaluation already {@link ProviderEvaluation.Outcome#TIMED_OUT timed out},
+	 * the late result is discarded. A returned instance retains the plugin class loader for as long as it is reachable, so it
+	 * keeps working after the cache got invalidated.
+	 *
+	 * @param outcome  The outcome of the evaluation
+	 * @param instance The service provider instance, if available
+	 * @return The service provider instance, if available and not completed before
+	 */
+	Optional<T> complete(ProviderEvaluation.Outcome outcome, @Nullable T instance) {
+		if (!completed.compareAndSet(false, true)) {
+			return Optional.empty();
+		}
+		var evaluation = toEvaluation(outcome);
+		if (recorder != null) {
+			recorder.providerEvaluated(evaluation);
+		}
+		DiscoveryEvents.publish(evaluation);
+		if (instance != null && lease != null) {
+			lease.retainWhileReachable(instance);
+		}
+		return Optional.ofNullable(instance);
+	}
+
+	ProviderEvaluation toEvaluation(ProviderEvaluation.Outcome outcome) {
+		return new ProviderEvaluation(service, provider.type().getName(), priority, outcome, //
+				Duration.ofNanos(classLoadingNanos), //
+				Duration.ofNanos(staticCheckNanos), //
+				Duration.ofNanos(instantiationNanos), //
+				Duration.ofNanos(instanceCheckNanos));
+	}
+
+}
@@ -19,6 +19,7 @@ import java.lang.annotation.Target;
  *     <li>Should the method throw an exception, it has the same effect as returning {@code false}</li>
  *     <li>No specific execution order is guaranteed in case of multiple annotated methods</li>
  *     <li>Annotations must be present on classes or ancestor classes, not on interfaces</li>
+ *     <li>Results may be cached for a limited time using {@link #cacheSeconds()}</li>
  * </ul>
  *
  * Example:
@@ -44,4 +45,18 @@ import java.lang.annotation.Target;
 @Target({ElementType.TYPE, ElementType.METHOD})
 @Inherited
 public @interface CheckAvailability {
+
+	/**
+	 * Duration in seconds, for which the result of the annotated method may be reused instead of invoking it again.
+	 * <p>
+	 * Use this for expensive checks whose outcome is unlikely to change frequently, such as probing for installed drivers.
+	 * Results of non-static methods are shared by all instances of the same class. Exceptions are never cached.
+	 * <p>
+	 * This attribute only has an effect on methods. Cached results can be discarded using {@link IntegrationsLoader#invalidateAvailabilityCache()}.
+	 *
+	 * @return Time to live of the cached result in seconds, {@code 0} to disable caching
+	 * @since 1.9.0
+	 */
+	long cacheSeconds() default 0;
+
 }
@@ -1,31 +1,40 @@
 package org.cryptomator.integrations.common;
 
 import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.VisibleForTesting;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 class ClassLoaderFactory {
 
 	private static final Logger LOG = LoggerFactory.getLogger(ClassLoaderFactory.class);
 	private static final String PLUGIN_DIR_KEY = "cryptomator.pluginDir";
-	private static final String JAR_SUFFIX = ".jar";
+	static final String ISOLATE_SERVICES_KEY = "cryptomator.pluginDir.isolateServices";
+	private static final Object SHARED_LOCK = new Object();
+
+	private static SharedClassLoader shared; // guarded by SHARED_LOCK
 
 	/**
 	 * Attempts to find {@code .jar} files in the path specified in {@value #PLUGIN_DIR_KEY} system property.
 	 * A new class loader instance is returned that loads classes from the given classes.
 	 *
 	 * @return A new URLClassLoader that is aware of all {@code .jar} files in the plugin dir
+	 * @see #acquireForPluginDir()
 	 */
 	@Contract(value = "-> new", pure = true)
 	public static URLClassLoader forPluginDir() {
@@ -45,10 +54,102 @@ class ClassLoaderFactory {
 		}
 	}
 
+	/**
+	 * Acquires the class loader shared by all lookups, which is aware of all {@code .jar} files in the plugin dir.
+	 * <p>
+	 * The same class loader is returned as long as the plugin dir fingerprint (the set of jars, their sizes and modification dates) stays the same.
+	 * If it changes, a new class loader is created and the previous one gets closed as soon as all of its leases have been released.
+	 * The services provided by each jar are looked up in the {@link PluginDirCache}, so only new or modified jars need to be opened.
+	 * If the system property {@value #ISOLATE_SERVICES_KEY} is {@code true}, {@link SharedClassLoader#classLoaderFor(Class) lookups}
+	 * only see the plugin groups (i.e. subdirectories of the plugin dir) providing the requested service. If {@value PluginLayers#MODULE_LAYERS_KEY} is {@code true}, plugins are
+	 * loaded into {@link PluginLayers module layers} instead, wherever possible. If {@value JarIndex#INDEX_FILE_KEY} is set,
+	 * classes are looked up using a persistent {@link JarIndex}.
+	 * <p>
+	 * Each invocation retains the returned instance, so it must be {@link SharedClassLoader#close() closed} exactly once when no longer needed.
+	 *
+	 * @return A lease on the shared class loader
+	 */
+	static SharedClassLoader acquireForPluginDir() {
+		var dir = pluginDir();
+		var fingerprint = dir.flatMap(PluginDirWatcher::fingerprintOf) // no need to scan if watched
+				.orElseGet(() -> new Fingerprint(dir.orElse(null), dir.map(ClassLoaderFactory::scan).orElse(List.of())));
+		var jars = fingerprint.jars();
+		synchronized (SHARED_LOCK) {
+			if (shared == null || !shared.fingerprint().equals(fingerprint)) {
+				if (shared != null) {
+					LOG.debug("Contents of {} changed. Replacing plugin class loader.", PLUGIN_DIR_KEY);
+					shared.close(); // release the reference held by this factory
+				}
+				var layers = dir.isPresent() && Boolean.getBoolean(PluginLayers.MODULE_LAYERS_KEY) //
+						? PluginLayers.create(dir.get(), jars) //
+						: new PluginLayers.Result(List.of(), jars);
+				var classPathJars = layers.unresolved();
+				var services = PluginDirCache.get().providedServices(jars).entrySet().stream() //
+						.filter(e -> classPathJars.contains(e.getKey())) //
+						.collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, Map.Entry::getValue));
+				var classLoader = forIndexedJars(classPathJars);
+				shared = new SharedClassLoader(classLoader, fingerprint, services, Boolean.getBoolean(ISOLATE_SERVICES_KEY), layers.layers());
+			}
+			return shared.retain();
+		}
+	}
+
+	/**
+	 * Returns the current shared class loader (see {@link #acquireForPluginDir()}) without retaining it.
+	 * <p>
+	 * The returned class loader stays open until the plugin dir changes.
+	 *
+	 * @param service The service to look up
+	 * @return The shared class loader or its parent, if no plugin jar provides the given service
+	 * @see SharedClassLoader#classLoaderFor(Class)
+	 */
+	@VisibleForTesting
+	static ClassLoader sharedForPluginDir(Class<?> service) {
+		try (var lease = acquireForPluginDir()) {
+			return lease.classLoaderFor(service);
+		}
+	}
+
+	static Optional<Path> pluginDir() {
+		String val = System.getProperty(PLUGIN_DIR_KEY);
+		if (val == null) {
+			return Optional.empty();
+		}
+
+		try {
+			if (val.isBlank()) {
+				throw new IllegalArgumentException("Plugin dir path is blank");
+			}
+			return Optional.of(Path.of(val)); //Path.of() might throw InvalidPathException
+		} catch (IllegalArgumentException e) {
+			LOG.debug("{} contains illegal value. Skipping plugin directory.", PLUGIN_DIR_KEY, e);
+			return Optional.empty();
+		}
+	}
+
 	@VisibleForTesting
 	@Contract(value = "_ -> new", pure = true)
 	static URLClassLoader forPluginDirWithPath(Path path) throws UncheckedIOException {
-		var jars = findJars(path);
+		return forJars(findJars(path));
+	}
+
+	private static URLClassLoader forIndexedJars(List<JarStamp> jars) {
+		var urls = jars.stream().map(JarStamp::path).map(ClassLoaderFactory::toUrl).toArray(URL[]::new);
+		var indexFile = System.getProperty(JarIndex.INDEX_FILE_KEY);
+		if (indexFile == null || indexFile.isBlank() || jars.isEmpty()) {
+			return forJars(urls);
+		}
+		try {
+			var index = JarIndex.loadOrBuild(Path.of(indexFile), jars);
+			LOG.debug("Using index of {} plugin jar directories.", index.size());
+			return new IndexedClassLoader(urls, ClassLoader.getSystemClassLoader(), index); // same parent as URLClassLoader.newInstance()
+		} catch (InvalidPathException e) {
+			LOG.debug("{} contains illegal value. Not indexing plugin jars.", JarIndex.INDEX_FILE_KEY, e);
+			return forJars(urls);
+		}
+	}
+
+	private static URLClassLoader forJars(URL[] jars) {
 		if (LOG.isDebugEnabled() && jars.length != 0) {
 			String jarList = Arrays.stream(jars).map(URL::getPath).collect(Collectors.joining(", "));
 			LOG.debug("Found jars in cryptomator.pluginDir: {}", jarList);
@@ -58,15 +159,14 @@ class ClassLoaderFactory {
 
 	@VisibleForTesting
 	static URL[] findJars(Path path) {
-		try (var stream = Files.walk(path)) {
-			return stream.filter(ClassLoaderFactory::isJarFile).map(ClassLoaderFactory::toUrl).toArray(URL[]::new);
-		} catch (IOException | UncheckedIOException e) {
-			LOG.debug("Failed to read plugin dir {}", path, e);
-			return new URL[0];
-		}
+		return scan(path).stream().map(JarStamp::path).map(ClassLoaderFactory::toUrl).toArray(URL[]::new);
+	}
+
+	private static List<JarStamp> scan(Path path) {
+		return PluginDirScanner.fromSystemProperties().scan(path);
 	}
 
-	private static URL toUrl(Path path) throws UncheckedIOException {
+	static URL toUrl(Path path) throws UncheckedIOException {
 		try {
 			return path.toUri().toURL();
 		} catch (MalformedURLException e) {
@@ -74,8 +174,14 @@ class ClassLoaderFactory {
 		}
 	}
 
-	private static boolean isJarFile(Path path) {
-		return Files.isRegularFile(path) && path.getFileName().toString().toLowerCase().endsWith(JAR_SUFFIX);
+	record Fingerprint(@Nullable Path dir, List<JarStamp> jars) {
+	}
+
+	record JarStamp(Path path, long size, @Nullable FileTime lastModified) {
+
+		static JarStamp of(Path path, BasicFileAttributes attrs) {
+			return new JarStamp(path, attrs.size(), attrs.lastModifiedTime());
+		}
 	}
 
 }
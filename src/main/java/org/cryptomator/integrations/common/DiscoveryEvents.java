@@ -0,0 +1,42 @@
+package org.cryptomator.integrations.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Publishes {@link ProviderEvaluation}s to registered {@link DiscoveryListener}s and, if available, to JFR.
+ */
+class DiscoveryEvents {
+
+	private static final Logger LOG = LoggerFactory.getLogger(DiscoveryEvents.class);
+	private static final boolean JFR_AVAILABLE = ModuleLayer.boot().findModule("jdk.jfr").isPresent();
+	private static final List<DiscoveryListener> LISTENERS = new CopyOnWriteArrayList<>();
+
+	private DiscoveryEvents() {
+	}
+
+	static void addListener(DiscoveryListener listener) {
+		LISTENERS.add(listener);
+	}
+
+	static void removeListener(DiscoveryListener listener) {
+		LISTENERS.remove(listener);
+	}
+
+	static void publish(ProviderEvaluation evaluation) {
+		for (var listener : LISTENERS) {
+			try {
+				listener.providerEvaluated(evaluation);
+			} catch (RuntimeException e) {
+				LOG.warn("Discovery listener {} failed.", listener, e);
+			}
+		}
+		if (JFR_AVAILABLE) {
+			ProviderEvaluationEvent.commit(evaluation);
+		}
+	}
+
+}
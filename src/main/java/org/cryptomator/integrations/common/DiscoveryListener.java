@@ -0,0 +1,22 @@
+package org.cryptomator.integrations.common;
+
+/**
+ * Gets notified about each service provider candidate evaluated by the {@link IntegrationsLoader}.
+ * <p>
+ * Listeners are invoked synchronously on the thread performing the discovery, so implementations should return quickly.
+ * Exceptions thrown by listeners are logged and otherwise ignored.
+ *
+ * @see IntegrationsLoader#addDiscoveryListener(DiscoveryListener)
+ * @since 1.9.0
+ */
+@FunctionalInterface
+public interface DiscoveryListener {
+
+	/**
+	 * Invoked after a service provider candidate has been evaluated.
+	 *
+	 * @param evaluation Outcome and timing of the evaluation
+	 */
+	void providerEvaluated(ProviderEvaluation evaluation);
+
+}
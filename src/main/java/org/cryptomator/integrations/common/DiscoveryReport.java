@@ -0,0 +1,38 @@
+package org.cryptomator.integrations.common;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Describes the most recent discovery of the providers of a service.
+ * <p>
+ * Contains one {@link ProviderEvaluation} per candidate, stating whether it is available or why it has been rejected,
+ * along with its priority and the time spent evaluating it.
+ *
+ * @param service     The service class
+ * @param evaluations The evaluated candidates, ordered by priority in descending order
+ * @see IntegrationsLoader#describe(Class)
+ * @since 1.9.0
+ */
+public record DiscoveryReport(Class<?> service, List<ProviderEvaluation> evaluations) {
+
+	public DiscoveryReport {
+		evaluations = List.copyOf(evaluations);
+	}
+
+	/**
+	 * @return The evaluation of the provider returned by {@link IntegrationsLoader#load(Class)}, if any
+	 */
+	public Optional<ProviderEvaluation> selected() {
+		return evaluations.stream().filter(e -> e.outcome() == ProviderEvaluation.Outcome.AVAILABLE).findFirst();
+	}
+
+	/**
+	 * @return The total time spent evaluating all candidates
+	 */
+	public Duration total() {
+		return evaluations.stream().map(ProviderEvaluation::total).reduce(Duration.ZERO, Duration::plus);
+	}
+
+}
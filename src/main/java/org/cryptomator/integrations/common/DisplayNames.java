@@ -0,0 +1,73 @@
+package org.cryptomator.integrations.common;
+
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+
+/**
+ * Resolves the names used by the default implementation of {@link NamedServiceProvider#getName()} once per class.
+ * <p>
+ * A resolved name remains valid as long as the {@link Locale#getDefault() default locale} doesn't change. After a locale
+ * change, names get resolved again on their next lookup.
+ */
+final class DisplayNames {
+
+	private static final ClassValue<DisplayNames> CACHE = new ClassValue<>() {
+		@Override
+		protected DisplayNames computeValue(Class<?> type) {
+			return new DisplayNames(type);
+		}
+	};
+
+	private final Class<?> type;
+	private volatile Resolved resolved;
+
+	private DisplayNames(Class<?> type) {
+		this.type = type;
+	}
+
+	/**
+	 * Gets the name of the given class for the current default locale.
+	 *
+	 * @param type A service provider class
+	 * @return The localized name, the display name or the class name, in this order of precedence
+	 */
+	static String of(Class<?> type) {
+		return CACHE.get(type).get(Locale.getDefault());
+	}
+
+	private String get(Locale locale) {
+		var current = resolved;
+		if (current == null || !current.locale().equals(locale)) {
+			current = new Resolved(locale, resolve(type, locale));
+			resolved = current;
+		}
+		return current.name();
+	}
+
+	private static String resolve(Class<?> type, Locale locale) {
+		var localizedDisplayName = type.getAnnotation(LocalizedDisplayName.class);
+		if (localizedDisplayName != null) {
+			try {
+				return ResourceBundle.getBundle(localizedDisplayName.bundle(), locale) //
+						.getString(localizedDisplayName.key());
+			} catch (MissingResourceException e) {
+				var logger = LoggerFactory.getLogger(type);
+				logger.warn("Failed to load localized display name for {}. Falling back to not-localized display name/class name.", type.getName(), e);
+			}
+		}
+
+		var displayName = type.getAnnotation(DisplayName.class);
+		if (displayName != null) {
+			return displayName.value();
+		} else {
+			return type.getName();
+		}
+	}
+
+	private record Resolved(Locale locale, String name) {
+	}
+
+}
@@ -0,0 +1,156 @@
+package org.cryptomator.integrations.common;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.CodeSource;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.jar.JarFile;
+import java.util.zip.ZipFile;
+
+/**
+ * A plugin class loader that consults a {@link JarIndex} to find the jar containing a class or resource, rather than
+ * probing all jars in order.
+ * <p>
+ * Classes and resources in directories not contained in the index are looked up like in any other {@link URLClassLoader}.
+ * Jars are opened with runtime versioning, so classes of multi-release jars are defined from their versioned entries.
+ */
+final class IndexedClassLoader extends URLClassLoader {
+
+	private static final Logger LOG = LoggerFactory.getLogger(IndexedClassLoader.class);
+
+	static {
+		ClassLoader.registerAsParallelCapable();
+	}
+
+	private final URL[] jars;
+	private final JarIndex index;
+	private final AtomicReferenceArray<JarFile> jarFiles;
+
+	/**
+	 * @param jars   The plugin jars, in the same order as used to build the index
+	 * @param parent The parent class loader
+	 * @param index  The index of the given jars
+	 */
+	IndexedClassLoader(URL[] jars, ClassLoader parent, JarIndex index) {
+		super(jars, parent);
+		this.jars = jars.clone();
+		this.index = index;
+		this.jarFiles = new AtomicReferenceArray<>(jars.length);
+	}
+
+	@Override
+	protected Class<?> findClass(String name) throws ClassNotFoundException {
+		var path = name.replace('.', '/') + ".class";
+		var jarIndex = lookup(path);
+		if (jarIndex >= 0) {
+			try {
+				var jarFile = jarFile(jarIndex);
+				var entry = jarFile.getJarEntry(path);
+				if (entry != null) {
+					byte[] bytes;
+					try (var in = jarFile.getInputStream(entry)) {
+						bytes = in.readAllBytes();
+					}
+					definePackageIfAbsent(name, jarFile, jarIndex);
+					var codeSource = new CodeSource(jars[jarIndex], entry.getCodeSigners());
+					return defineClass(name, bytes, 0, bytes.length, codeSource);
+				}
+			} catch (IOException e) {
+				LOG.debug("Failed to read {} from {}", path, jars[jarIndex], e);
+			}
+		}
+		return super.findClass(name);
+	}
+
+	@Override
+	public @Nullable URL findResource(String name) {
+		var jarIndex = lookup(name);
+		if (jarIndex >= 0) {
+			try {
+				var jarFile = jarFile(jarIndex);
+				if (jarFile.isMultiRelease()) {
+					return super.findResource(name); // let URLClassLoader create URLs pointing to the versioned entry
+				}
+				if (jarFile.getEntry(name) != null) {
+					var encodedName = new URI(null, null, name, null).getRawPath();
+					return URI.create("jar:" + jars[jarIndex].toExternalForm() + "!/" + encodedName).toURL();
+				}
+			} catch (IOException | URISyntaxException | IllegalArgumentException e) {
+				LOG.debug("Failed to look up {} in {}", name, jars[jarIndex], e);
+			}
+		}
+		return super.findResource(name);
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			for (int i = 0; i < jarFiles.length(); i++) {
+				var jarFile = jarFiles.getAndSet(i, null);
+				if (jarFile != null) {
+					jarFile.close();
+				}
+			}
+		} finally {
+			super.close();
+		}
+	}
+
+	private int lookup(String path) {
+		var slash = path.lastIndexOf('/');
+		return slash > 0 ? index.lookup(path.substring(0, slash)) : -1;
+	}
+
+	private JarFile jarFile(int jarIndex) throws IOException {
+		var jarFile = jarFiles.get(jarIndex);
+		if (jarFile == null) {
+			var opened = new JarFile(toFile(jars[jarIndex]), true, ZipFile.OPEN_READ, JarFile.runtimeVersion());
+			if (jarFiles.compareAndSet(jarIndex, null, opened)) {
+				jarFile = opened;
+			} else {
+				opened.close();
+				jarFile = jarFiles.get(jarIndex);
+			}
+		}
+		return jarFile;
+	}
+
+	private static File toFile(URL url) throws MalformedURLException {
+		try {
+			return new File(url.toURI());
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			throw new MalformedURLException("Not a file URL: " + url);
+		}
+	}
+
+	private void definePackageIfAbsent(String className, JarFile jarFile, int jarIndex) throws IOException {
+		var lastDot = className.lastIndexOf('.');
+		if (lastDot == -1) {
+			return;
+		}
+		var packageName = className.substring(0, lastDot);
+		if (getDefinedPackage(packageName) != null) {
+			return;
+		}
+		try {
+			var manifest = jarFile.getManifest();
+			if (manifest != null) {
+				definePackage(packageName, manifest, jars[jarIndex]);
+			} else {
+				definePackage(packageName, null, null, null, null, null, null, null);
+			}
+		} catch (IllegalArgumentException e) {
+			// defined concurrently
+		}
+	}
+
+}
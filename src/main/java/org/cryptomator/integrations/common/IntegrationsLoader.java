@@ -6,19 +6,41 @@ import org.jetbrains.annotations.VisibleForTesting;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.ServiceConfigurationError;
 import java.util.ServiceLoader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Stream;
 
 public class IntegrationsLoader {
 
 	private static final Logger LOG = LoggerFactory.getLogger(IntegrationsLoader.class);
+	static final String PROVIDER_TIMEOUT_KEY = "cryptomator.integrationsLoader.providerTimeoutMillis";
+	static final String CONCURRENT_DISCOVERY = "concurrent"; // cache variant of loadAllConcurrently
+	private static final Object PLUGIN_CLASS_LOADER_LOCK = new Object();
+	private static final ClassValue<Boolean> SUPPORTED_PLATFORM = new ClassValue<>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			return isSupportedOperatingSystem(type);
+		}
+	};
+	private static final Executor ASYNC_EXECUTOR = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("integrations-loader-", 0).factory());
+
+	private static volatile SharedClassLoader pluginClassLoader; // lease held until the cache gets invalidated
 
 	private IntegrationsLoader() {
 	}
@@ -27,15 +49,33 @@ public class IntegrationsLoader {
 	 * Loads the best suited service provider, i.e. the one with the highest priority that is supported.
 	 * <p>
 	 * If two services are available with the same priority, it is unspecified which one will be returned.
+	 * <p>
+	 * Candidates are checked and instantiated one by one in descending priority, stopping at the first available one.
+	 * <p>
+	 * The result is cached, i.e. subsequent invocations return the same instance until the cache gets
+	 * {@link #invalidateCache(Class) invalidated}.
 	 *
 	 * @param clazz Service class
 	 * @param <T>   Type of the service
 	 * @return Highest priority service provider or empty if no supported service provider was found
+	 * @see #loadUncached(Class)
 	 */
 	public static <T> Optional<T> load(Class<T> clazz) {
 		return loadAll(clazz).findFirst();
 	}
 
+	/**
+	 * Loads the best suited service provider like {@link #load(Class)}, but bypasses the cache and always creates a new instance.
+	 *
+	 * @param clazz Service class
+	 * @param <T>   Type of the service
+	 * @return Highest priority service provider or empty if no supported service provider was found
+	 * @since 1.9.0
+	 */
+	public static <T> Optional<T> loadUncached(Class<T> clazz) {
+		return loadAllUncached(clazz).findFirst();
+	}
+
 	/**
 	 * Loads a specific service provider by its implementation class name.
 	 * @param clazz Service class
@@ -44,10 +84,17 @@ public class IntegrationsLoader {
 	 * @param <T> Type of the service
 	 */
 	public static <T> Optional<T> loadSpecific(Class<T> clazz, String implementationClassName) {
-		return ServiceLoader.load(clazz, ClassLoaderFactory.forPluginDir()).stream()
-				.filter(provider -> provider.type().getName().equals(implementationClassName))
-				.map(ServiceLoader.Provider::get)
-				.findAny();
+		try (var lease = ClassLoaderFactory.acquireForPluginDir()) {
+			return lease.serviceLoaders(clazz).stream()
+					.flatMap(ServiceLoader::stream)
+					.filter(provider -> provider.type().getName().equals(implementationClassName))
+					.map(provider -> {
+						var instance = provider.get();
+						lease.retainWhileReachable(instance);
+						return instance;
+					})
+					.findAny();
+		}
 	}
 
 	/**
@@ -55,19 +102,162 @@ public class IntegrationsLoader {
 	 * <p>
 	 * Only services declared in the `org.cryptomator.integrations.api` module can be loaded with this method.
 	 * Foreign services need to use {@link IntegrationsLoader#loadAll(ServiceLoader, Class)}.
+	 * <p>
+	 * The discovered providers are cached per service class and class loader, i.e. subsequent invocations return the same
+	 * instances without repeating the discovery until the cache gets {@link #invalidateCache(Class) invalidated}.
 	 *
 	 * @param clazz Service class
 	 * @param <T>   Type of the service
 	 * @return An ordered stream of all suited service providers
+	 * @see #loadAllUncached(Class)
 	 */
 	public static <T> Stream<T> loadAll(Class<T> clazz) {
-		return loadAll(ServiceLoader.load(clazz, ClassLoaderFactory.forPluginDir()), clazz);
+		Objects.requireNonNull(clazz, "Service to load not specified.");
+		try (var lease = pluginClassLoader()) {
+			return ProviderRegistry.get(clazz, lease.classLoaderFor(clazz), null, lease, recorder -> loadAll(lease.serviceLoaders(clazz), clazz, lease, recorder));
+		}
+	}
+
+	/**
+	 * Loads all suited service providers like {@link #loadAll(Class)}, but bypasses the cache.
+	 * <p>
+	 * Use this method if you need fresh instances, e.g. because the providers are stateful.
+	 *
+	 * @param clazz Service class
+	 * @param <T>   Type of the service
+	 * @return An ordered stream of all suited service providers
+	 * @since 1.9.0
+	 */
+	public static <T> Stream<T> loadAllUncached(Class<T> clazz) {
+		try (var lease = ClassLoaderFactory.acquireForPluginDir()) {
+			var candidates = findCandidates(lease.serviceLoaders(clazz), clazz, lease, null); // each candidate retains the lease
+			return candidates.stream().map(IntegrationsLoader::evaluate).flatMap(Optional::stream);
+		}
+	}
+
+	/**
+	 * Loads the best suited service provider like {@link #load(Class)}, but performs the discovery on a virtual thread.
+	 *
+	 * @param clazz Service class
+	 * @param <T>   Type of the service
+	 * @return A future completing with the highest priority service provider or empty if no supported service provider was found
+	 * @since 1.9.0
+	 */
+	public static <T> CompletableFuture<Optional<T>> loadAsync(Class<T> clazz) {
+		return CompletableFuture.supplyAsync(() -> load(clazz), ASYNC_EXECUTOR);
+	}
+
+	/**
+	 * Loads all suited service providers like {@link #loadAll(Class)}, but performs the discovery on a virtual thread.
+	 *
+	 * @param clazz Service class
+	 * @param <T>   Type of the service
+	 * @return A future completing with all suited service providers, ordered by priority in descending order
+	 * @since 1.9.0
+	 */
+	public static <T> CompletableFuture<List<T>> loadAllAsync(Class<T> clazz) {
+		return CompletableFuture.supplyAsync(() -> loadAll(clazz).toList(), ASYNC_EXECUTOR);
+	}
+
+	/**
+	 * Discovers the providers of all services used by this module in parallel, so that subsequent lookups via
+	 * {@link #load(Class)} or {@link #loadAll(Class)} can be answered from the cache.
+	 * <p>
+	 * Invoke this method early during application startup. Failures are logged and don't cause the returned future to fail.
+	 *
+	 * @return A future completing when all services have been discovered
+	 * @since 1.9.0
+	 */
+	public static CompletableFuture<Void> warmUp() {
+		var module = IntegrationsLoader.class.getModule();
+		if (!module.isNamed()) {
+			LOG.debug("Not running as named module. Skipping warm-up.");
+			return CompletableFuture.completedFuture(null);
+		}
+		var futures = module.getDescriptor().uses().stream()
+				.map(serviceName -> Class.forName(module, serviceName))
+				.filter(Objects::nonNull)
+				.map(service -> loadAllAsync(service).exceptionally(e -> {
+					LOG.warn("Failed to discover providers of {}.", service.getName(), e);
+					return List.of();
+				}))
+				.toArray(CompletableFuture[]::new);
+		return CompletableFuture.allOf(futures);
+	}
+
+	/**
+	 * Drops all cached providers of the given service, so that the next lookup repeats the discovery.
+	 *
+	 * @param clazz Service class
+	 * @since 1.9.0
+	 */
+	public static void invalidateCache(Class<?> clazz) {
+		ProviderRegistry.invalidate(clazz);
+	}
+
+	/**
+	 * Drops all cached providers of all services and releases the class loader used to load them.
+	 * <p>
+	 * Use this method e.g. after changing the plugin dir. The next lookup will pick up the current plugin dir contents.
+	 * Provider instances obtained before keep working, as the class loader only gets closed once none of them is reachable anymore.
+	 *
+	 * @since 1.9.0
+	 */
+	public static void invalidateCache() {
+		synchronized (PLUGIN_CLASS_LOADER_LOCK) {
+			ProviderRegistry.invalidateAll();
+			if (pluginClassLoader != null) {
+				pluginClassLoader.close();
+				pluginClassLoader = null;
+			}
+		}
+	}
+
+	/**
+	 * Discards all cached results of {@link CheckAvailability#cacheSeconds() cacheable} availability checks, so they get
+	 * re-evaluated during the next discovery.
+	 * <p>
+	 * Note that providers cached by {@link #loadAll(Class)} are not affected, use {@link #invalidateCache(Class)} to repeat their discovery.
+	 *
+	 * @since 1.9.0
+	 */
+	public static void invalidateAvailabilityCache() {
+		AvailabilityChecks.invalidateResults();
+	}
+
+	/**
+	 * Retains the plugin class loader used by cached lookups, acquiring it on first use or after the cache got invalidated.
+	 *
+	 * @return A lease that must be closed by the caller
+	 */
+	private static SharedClassLoader pluginClassLoader() {
+		var lease = pluginClassLoader;
+		if (lease != null) {
+			try {
+				return lease.retain();
+			} catch (IllegalStateException e) {
+				// closed concurrently, acquire the current one
+			}
+		}
+		synchronized (PLUGIN_CLASS_LOADER_LOCK) {
+			if (pluginClassLoader == null || pluginClassLoader.isClosed()) {
+				pluginClassLoader = ClassLoaderFactory.acquireForPluginDir();
+			}
+			return pluginClassLoader.retain();
+		}
 	}
 
 	/**
 	 * Loads all suited service providers ordered by priority in descending order.
 	 * <p>
 	 * This method allows arbitrary services to be loaded, as long as the provided service loader has module access to them.
+	 * <p>
+	 * The returned stream is lazy: Candidates are ordered by their {@link Priority} first, which only requires reading
+	 * annotations. Availability checks and instantiation then take place one by one, as far as the stream gets consumed.
+	 * <p>
+	 * If the system property {@code cryptomator.integrationsLoader.providerTimeoutMillis} is set, each candidate gets
+	 * checked and instantiated on a virtual thread and is considered unavailable if this doesn't finish within the given
+	 * number of milliseconds. Timeouts are reported as {@link ProviderEvaluation.Outcome#TIMED_OUT}.
 	 *
 	 * @param serviceLoader Loader with own module scope
 	 * @param clazz         Service class
@@ -76,14 +266,257 @@ public class IntegrationsLoader {
 	 */
 	public static <T> Stream<T> loadAll(ServiceLoader<T> serviceLoader, @NotNull Class<T> clazz) {
 		Objects.requireNonNull(clazz, "Service to load not specified.");
-		return serviceLoader.stream()
-				.peek(serviceProvider -> logFoundServiceProvider(clazz, serviceProvider.type()))
-				.filter(IntegrationsLoader::isSupportedOperatingSystem)
-				.filter(IntegrationsLoader::passesStaticAvailabilityCheck)
-				.sorted(Comparator.comparingInt(IntegrationsLoader::getPriority).reversed())
-				.flatMap(IntegrationsLoader::instantiateServiceProvider)
-				.filter(IntegrationsLoader::passesInstanceAvailabilityCheck)
-				.peek(impl -> logServiceIsAvailable(clazz, impl.getClass()));
+		return loadAll(List.of(serviceLoader), clazz, null, null);
+	}
+
+	private static <T> Stream<T> loadAll(List<ServiceLoader<T>> serviceLoaders, Class<T> clazz, @Nullable SharedClassLoader lease, @Nullable DiscoveryListener recorder) {
+		return Stream.of(serviceLoaders) // defer discovery until the stream gets consumed
+				.flatMap(loaders -> findCandidates(loaders, clazz, lease, recorder).stream())
+				.map(IntegrationsLoader::evaluate)
+				.flatMap(Optional::stream);
+	}
+
+	/**
+	 * Discovers all service providers without instantiating them.
+	 * <p>
+	 * Other than {@link #loadAll(Class)}, the result includes providers that are not available. Their metadata can be
+	 * inspected via the returned handles, while instantiation and instance availability checks are deferred until
+	 * {@link ProviderHandle#get()} is invoked.
+	 *
+	 * @param clazz Service class
+	 * @param <T>   Type of the service
+	 * @return Handles of all service providers ordered by priority in descending order
+	 * @see #loadAllLazy(ServiceLoader, Class)
+	 * @since 1.9.0
+	 */
+	public static <T> List<ProviderHandle<T>> loadAllLazy(Class<T> clazz) {
+		Objects.requireNonNull(clazz, "Service to load not specified.");
+		try (var lease = ClassLoaderFactory.acquireForPluginDir()) {
+			return findCandidates(lease.serviceLoaders(clazz), clazz, lease, null).stream().map(ProviderHandle::new).toList();
+		}
+	}
+
+	/**
+	 * Discovers all service providers like {@link #loadAllLazy(Class)}, using the given service loader.
+	 *
+	 * @param serviceLoader Loader with own module scope
+	 * @param clazz         Service class
+	 * @param <T>           Type of the service
+	 * @return Handles of all service providers ordered by priority in descending order
+	 * @since 1.9.0
+	 */
+	public static <T> List<ProviderHandle<T>> loadAllLazy(ServiceLoader<T> serviceLoader, @NotNull Class<T> clazz) {
+		Objects.requireNonNull(clazz, "Service to load not specified.");
+		return loadAllLazy(List.of(serviceLoader), clazz);
+	}
+
+	private static <T> List<ProviderHandle<T>> loadAllLazy(List<ServiceLoader<T>> serviceLoaders, Class<T> clazz) {
+		return findCandidates(serviceLoaders, clazz, null, null).stream().map(ProviderHandle::new).toList();
+	}
+
+	/**
+	 * Loads all suited service providers like {@link #loadAll(Class)}, but evaluates the {@link CheckAvailability availability checks}
+	 * of all candidates concurrently.
+	 * <p>
+	 * The result is cached separately from {@link #loadAll(Class)}, i.e. neither lookup returns the result of the other one.
+	 * Providers that timed out are considered unavailable by subsequent invocations of this method, until the cache gets
+	 * {@link #invalidateCache(Class) invalidated}. Since the cache is shared by all invocations regardless of the timeout,
+	 * the timeout only takes effect during the first discovery.
+	 *
+	 * @param clazz   Service class
+	 * @param timeout Maximum time to wait for each candidate to pass its availability checks
+	 * @param <T>     Type of the service
+	 * @return An ordered stream of all suited service providers
+	 * @see #loadAllConcurrently(ServiceLoader, Class, Duration)
+	 * @since 1.9.0
+	 */
+	public static <T> Stream<T> loadAllConcurrently(Class<T> clazz, Duration timeout) {
+		Objects.requireNonNull(clazz, "Service to load not specified.");
+		try (var lease = pluginClassLoader()) {
+			return ProviderRegistry.get(clazz, lease.classLoaderFor(clazz), CONCURRENT_DISCOVERY, lease, recorder -> loadAllConcurrently(lease.serviceLoaders(clazz), clazz, timeout, lease, recorder));
+		}
+	}
+
+	/**
+	 * Loads all suited service providers ordered by priority in descending order.
+	 * <p>
+	 * Other than {@link #loadAll(ServiceLoader, Class)}, each candidate is checked and instantiated on its own virtual thread,
+	 * so that the time spent in this method is determined by the slowest rather than the sum of all
+	 * {@link CheckAvailability availability checks}. Candidates not passing all checks within the given timeout are
+	 * considered unavailable and reported as {@link ProviderEvaluation.Outcome#TIMED_OUT}.
+	 * <p>
+	 * This method blocks until all candidates have been evaluated or timed out.
+	 *
+	 * @param serviceLoader Loader with own module scope
+	 * @param clazz         Service class
+	 * @param timeout       Maximum time to wait for each candidate to pass its availability checks
+	 * @param <T>           Type of the service
+	 * @return An ordered stream of all suited service providers
+	 * @since 1.9.0
+	 */
+	public static <T> Stream<T> loadAllConcurrently(ServiceLoader<T> serviceLoader, @NotNull Class<T> clazz, Duration timeout) {
+		Objects.requireNonNull(clazz, "Service to load not specified.");
+		return loadAllConcurrently(List.of(serviceLoader), clazz, timeout, null, null);
+	}
+
+	private static <T> Stream<T> loadAllConcurrently(List<ServiceLoader<T>> serviceLoaders, Class<T> clazz, Duration timeout, @Nullable SharedClassLoader lease, @Nullable DiscoveryListener recorder) {
+		var candidates = findCandidates(serviceLoaders, clazz, lease, recorder);
+		var executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("availability-check-", 0).factory());
+		try {
+			var deadline = System.nanoTime() + timeout.toNanos();
+			var futures = candidates.stream().map(candidate -> executor.submit(() -> evaluateInline(candidate))).toList();
+			var result = new ArrayList<T>(candidates.size());
+			for (int i = 0; i < candidates.size(); i++) {
+				awaitAvailability(futures.get(i), candidates.get(i), deadline).ifPresent(result::add);
+			}
+			return result.stream();
+		} finally {
+			executor.shutdownNow(); // interrupts checks that timed out
+		}
+	}
+
+	/**
+	 * Reports how each provider of the given service has been evaluated, e.g. to diagnose why a provider is not being used.
+	 * <p>
+	 * The report is taken from the cached discovery of {@link #loadAll(Class)}, which is completed if required, i.e. this
+	 * method evaluates (and caches) candidates not yet evaluated, but doesn't repeat the discovery. Uncached lookups, such
+	 * as {@link #loadAllLazy(Class)} or {@link #loadAllUncached(Class)}, don't affect the report.
+	 *
+	 * @param clazz Service class
+	 * @param <T>   Type of the service
+	 * @return Outcome, priority and timing of each candidate
+	 * @since 1.9.0
+	 */
+	public static <T> DiscoveryReport describe(Class<T> clazz) {
+		Objects.requireNonNull(clazz, "Service to load not specified.");
+		try (var lease = pluginClassLoader()) {
+			var evaluations = ProviderRegistry.evaluations(clazz, lease.classLoaderFor(clazz), null, lease, recorder -> loadAll(lease.serviceLoaders(clazz), clazz, lease, recorder)).stream()
+					.sorted(Comparator.comparingInt(ProviderEvaluation::priority).reversed().thenComparing(ProviderEvaluation::implementationName))
+					.toList();
+			return new DiscoveryReport(clazz, evaluations);
+		}
+	}
+
+	/**
+	 * Registers a listener that gets notified about each service provider candidate evaluated during discovery.
+	 *
+	 * @param listener The listener to add
+	 * @since 1.9.0
+	 */
+	public static void addDiscoveryListener(DiscoveryListener listener) {
+		DiscoveryEvents.addListener(Objects.requireNonNull(listener));
+	}
+
+	/**
+	 * Unregisters a listener previously added via {@link #addDiscoveryListener(DiscoveryListener)}.
+	 *
+	 * @param listener The listener to remove
+	 * @since 1.9.0
+	 */
+	public static void removeDiscoveryListener(DiscoveryListener listener) {
+		DiscoveryEvents.removeListener(listener);
+	}
+
+	/**
+	 * Finds all service providers and orders them by priority in descending order.
+	 *
+	 * @param serviceLoaders The service loaders to query
+	 * @param clazz          Service class
+	 * @param lease          The plugin class loader used by the service loaders, if any, which gets retained while any candidate or instance is reachable
+	 * @param recorder       Records evaluations along with the cached discovery, if any
+	 * @param <T>            Type of the service
+	 * @return The candidates
+	 */
+	private static <T> List<Candidate<T>> findCandidates(List<ServiceLoader<T>> serviceLoaders, Class<T> clazz, @Nullable SharedClassLoader lease, @Nullable DiscoveryListener recorder) {
+		var candidates = new ArrayList<Candidate<T>>();
+		var types = new HashSet<Class<?>>(); // service loaders of plugin layers also find providers of parent layers
+		for (var serviceLoader : serviceLoaders) {
+			var iterator = serviceLoader.stream().iterator();
+			while (true) {
+				var start = System.nanoTime();
+				if (!iterator.hasNext()) {
+					break;
+				}
+				var provider = iterator.next();
+				var type = provider.type(); // loads the class, if not yet done by hasNext()
+				var classLoadingNanos = System.nanoTime() - start;
+				if (types.add(type)) {
+					logFoundServiceProvider(clazz, type);
+					var candidate = new Candidate<>(clazz, provider, getPriority(provider), classLoadingNanos, lease, recorder);
+					if (lease != null) {
+						lease.retainWhileReachable(candidate); // classes may still be loaded during evaluation
+					}
+					candidates.add(candidate);
+				}
+			}
+		}
+		candidates.sort(Comparator.comparingInt(Candidate<T>::priority).reversed());
+		return candidates;
+	}
+
+	/**
+	 * Evaluates the given candidate, enforcing the time budget configured via {@value #PROVIDER_TIMEOUT_KEY}, if any.
+	 *
+	 * @param candidate The candidate to evaluate
+	 * @param <T>       Type of the service
+	 * @return The service provider instance, if available
+	 */
+	static <T> Optional<T> evaluate(Candidate<T> candidate) {
+		var budget = Long.getLong(PROVIDER_TIMEOUT_KEY, 0L);
+		if (budget <= 0) {
+			return evaluateInline(candidate);
+		}
+		var task = new FutureTask<>(() -> evaluateInline(candidate));
+		Thread.ofVirtual().name("provider-evaluation").start(task);
+		return awaitAvailability(task, candidate, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budget));
+	}
+
+	private static <T> Optional<T> evaluateInline(Candidate<T> candidate) {
+		var provider = candidate.provider();
+		if (!isSupportedOperatingSystem(provider)) {
+			return candidate.complete(ProviderEvaluation.Outcome.UNSUPPORTED_OPERATING_SYSTEM, null);
+		}
+
+		var start = System.nanoTime();
+		var passesStaticCheck = passesStaticAvailabilityCheck(provider);
+		candidate.staticCheckNanos = System.nanoTime() - start;
+		if (!passesStaticCheck) {
+			return candidate.complete(ProviderEvaluation.Outcome.FAILED_STATIC_CHECK, null);
+		}
+
+		start = System.nanoTime();
+		var instance = instantiateServiceProvider(provider);
+		candidate.instantiationNanos = System.nanoTime() - start;
+		if (instance.isEmpty()) {
+			return candidate.complete(ProviderEvaluation.Outcome.FAILED_INSTANTIATION, null);
+		}
+
+		start = System.nanoTime();
+		var passesInstanceCheck = passesInstanceAvailabilityCheck(instance.get());
+		candidate.instanceCheckNanos = System.nanoTime() - start;
+		if (!passesInstanceCheck) {
+			return candidate.complete(ProviderEvaluation.Outcome.FAILED_INSTANCE_CHECK, null);
+		}
+
+		logServiceIsAvailable(candidate.service(), provider.type());
+		return candidate.complete(ProviderEvaluation.Outcome.AVAILABLE, instance.get());
+	}
+
+	private static <T> Optional<T> awaitAvailability(Future<Optional<T>> future, Candidate<T> candidate, long deadline) {
+		try {
+			return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+		} catch (TimeoutException e) {
+			future.cancel(true);
+			LOG.warn("Evaluation of service provider {} timed out.", candidate.provider().type().getName());
+			return candidate.complete(ProviderEvaluation.Outcome.TIMED_OUT, null);
+		} catch (ExecutionException e) {
+			LOG.warn("Unable to load service provider {}.", candidate.provider().type().getName(), e.getCause());
+			return candidate.complete(ProviderEvaluation.Outcome.FAILED, null);
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			return Optional.empty();
+		}
 	}
 
 	private static void logFoundServiceProvider(Class<?> apiType, Class<?> implType) {
@@ -93,24 +526,41 @@ public class IntegrationsLoader {
 	}
 
 	private static int getPriority(ServiceLoader.Provider<?> provider) {
+		var indexed = ProviderIndex.lookup(provider.type());
+		if (indexed.isPresent()) {
+			return indexed.get().priority();
+		}
 		var prio = provider.type().getAnnotation(Priority.class);
 		return prio == null ? Priority.DEFAULT : prio.value();
 	}
 
 	private static boolean isSupportedOperatingSystem(ServiceLoader.Provider<?> provider) {
-		var annotations = provider.type().getAnnotationsByType(OperatingSystem.class);
+		return SUPPORTED_PLATFORM.get(provider.type());
+	}
+
+	static boolean isStaticallyAvailable(Class<?> type) {
+		return SUPPORTED_PLATFORM.get(type) && passesStaticAvailabilityCheck(type);
+	}
+
+	@VisibleForTesting
+	static boolean isSupportedOperatingSystem(Class<?> type) {
+		var indexed = ProviderIndex.lookup(type);
+		if (indexed.isPresent()) {
+			return indexed.get().isSupportedOperatingSystem();
+		}
+		var annotations = type.getAnnotationsByType(OperatingSystem.class);
 		return annotations.length == 0 || Arrays.stream(annotations).anyMatch(OperatingSystem.Value::isCurrent);
 	}
 
-	private static <T> Stream<T> instantiateServiceProvider(ServiceLoader.Provider<T> provider) {
+	private static <T> Optional<T> instantiateServiceProvider(ServiceLoader.Provider<T> provider) {
 		try {
-			return Stream.of(provider.get());
+			return Optional.of(provider.get());
 		} catch (ServiceConfigurationError err) {
 			//ServiceLoader.Provider::get throws this error if (from javadoc)
 			// * the public static "provider()" method of a provider factory returns null
 			// * the service provider cannot be instantiated due to an error/throw
 			LOG.warn("Unable to load service provider {}.", provider.type().getName(), err);
-			return Stream.empty();
+			return Optional.empty();
 		}
 	}
 
@@ -144,33 +594,36 @@ public class IntegrationsLoader {
 	}
 
 	private static <T> boolean passesAvailabilityCheck(Class<? extends T> type, @Nullable T instance) {
-		if (!type.isAnnotationPresent(CheckAvailability.class)) {
+		var isStatic = instance == null;
+		var availabilityChecks = AvailabilityChecks.of(type);
+		if (!availabilityChecks.isRequired(isStatic)) {
 			return true; // if type is not annotated, skip tests
 		}
-		if (!type.getModule().isExported(type.getPackageName(), IntegrationsLoader.class.getModule())) {
+		if (!availabilityChecks.isAccessible()) {
 			LOG.error("Can't run @CheckAvailability tests for class {}. Make sure to export {} to {}!", type.getName(), type.getPackageName(), IntegrationsLoader.class.getPackageName());
 			return false;
 		}
-		return Arrays.stream(type.getMethods())
-				.filter(m -> isAvailabilityCheck(m, instance == null))
-				.allMatch(m -> passesAvailabilityCheck(m, instance));
+		for (var check : availabilityChecks.get(isStatic)) {
+			if (!passesAvailabilityCheck(check, instance)) {
+				return false;
+			}
+		}
+		return true;
 	}
 
-	private static boolean passesAvailabilityCheck(Method m, @Nullable Object instance) {
-		assert Boolean.TYPE.equals(m.getReturnType());
+	private static boolean passesAvailabilityCheck(AvailabilityChecks.Check check, @Nullable Object instance) {
 		try {
-			return (boolean) m.invoke(instance);
-		} catch (ReflectiveOperationException e) {
-			LOG.warn("Failed to invoke @CheckAvailability test {}#{}", m.getDeclaringClass(), m.getName(), e);
+			return check.test(instance);
+		} catch (VirtualMachineError e) {
+			throw e; // e.g. OutOfMemoryError, not related to the check
+		} catch (Throwable e) {
+			// like Method.invoke() did, treat any other throwable, including LinkageErrors like UnsatisfiedLinkError, as unavailable
+			if (e instanceof InterruptedException) {
+				Thread.currentThread().interrupt();
+			}
+			LOG.warn("Failed to invoke @CheckAvailability test {}#{}", check.declaringClass(), check.name(), e);
 			return false;
 		}
 	}
 
-	private static boolean isAvailabilityCheck(Method m, boolean isStatic) {
-		return m.isAnnotationPresent(CheckAvailability.class)
-				&& Boolean.TYPE.equals(m.getReturnType())
-				&& m.getParameterCount() == 0
-				&& Modifier.isStatic(m.getModifiers()) == isStatic;
-	}
-
 }
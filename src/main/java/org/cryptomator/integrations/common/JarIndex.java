@@ -0,0 +1,221 @@
+package org.cryptomator.integrations.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.zip.ZipFile;
+
+/**
+ * Maps packages (more precisely: directories inside of jars) to the first plugin jar containing them.
+ * <p>
+ * The index is stored in a binary file, that is memory-mapped and searched in place, so it doesn't need to be parsed on
+ * subsequent launches. The file is only mapped once it is known to be current. It is rebuilt whenever the set of jars (including their sizes and modification dates) changes.
+ * <p>
+ * File layout (big endian):
+ * <pre>
+ * int      magic
+ * int      version
+ * byte[32] SHA-256 of the jar stamps
+ * int      number of entries n
+ * int[n]   offsets of the entries, sorted by directory name (unsigned byte order)
+ * entries: short length, byte[length] UTF-8 encoded directory name, int jar index
+ * </pre>
+ *
+ * @see IndexedClassLoader
+ */
+final class JarIndex {
+
+	private static final Logger LOG = LoggerFactory.getLogger(JarIndex.class);
+	static final String INDEX_FILE_KEY = "cryptomator.pluginDir.indexFile";
+	private static final int MAGIC = 0x434A4958; // "CJIX"
+	private static final int VERSION = 1;
+	private static final int DIGEST_LENGTH = 32;
+	private static final int HEADER_LENGTH = 4 + 4 + DIGEST_LENGTH + 4;
+	private static final Comparator<byte[]> UNSIGNED_ORDER = Arrays::compareUnsigned;
+
+	private final ByteBuffer buffer;
+	private final int size;
+
+	private JarIndex(ByteBuffer buffer) {
+		this.buffer = buffer;
+		this.size = buffer.getInt(HEADER_LENGTH - 4);
+	}
+
+	/**
+	 * Maps the index stored in the given file, or (re)builds and stores it, if the file is missing or outdated.
+	 *
+	 * @param file Location of the index file
+	 * @param jars The plugin jars, in class path order
+	 * @return The index
+	 */
+	static JarIndex loadOrBuild(Path file, List<ClassLoaderFactory.JarStamp> jars) {
+		var digest = digest(jars);
+		try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			// validate before mapping, as mapped files can't be replaced on Windows as long as the mapping is reachable
+			var header = ByteBuffer.allocate(HEADER_LENGTH);
+			channel.read(header, 0);
+			if (isValid(header.flip(), channel.size(), digest)) {
+				LOG.trace("Using jar index {}", file);
+				return new JarIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+			}
+		} catch (IOException e) {
+			LOG.trace("No usable jar index at {}", file, e);
+		}
+
+		var built = build(jars, digest);
+		try {
+			write(file, built);
+			try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				return new JarIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+			}
+		} catch (IOException e) {
+			LOG.debug("Failed to write jar index {}. Using in-memory index.", file, e);
+			return new JarIndex(built);
+		}
+	}
+
+	/**
+	 * Builds an in-memory index, e.g. if no index file is configured.
+	 *
+	 * @param jars The plugin jars, in class path order
+	 * @return The index
+	 */
+	static JarIndex build(List<ClassLoaderFactory.JarStamp> jars) {
+		return new JarIndex(build(jars, digest(jars)));
+	}
+
+	/**
+	 * Looks up the jar containing the given directory.
+	 *
+	 * @param dir A directory name inside a jar without trailing slash, e.g. {@code com/example}
+	 * @return The index of the first jar containing this directory, or {@code -1} if unknown
+	 */
+	int lookup(String dir) {
+		var key = dir.getBytes(StandardCharsets.UTF_8);
+		int low = 0, high = size - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int offset = buffer.getInt(HEADER_LENGTH + mid * 4);
+			int cmp = compare(offset, key);
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return buffer.getInt(offset + 2 + key.length);
+			}
+		}
+		return -1;
+	}
+
+	int size() {
+		return size;
+	}
+
+	private int compare(int offset, byte[] key) {
+		int length = Short.toUnsignedInt(buffer.getShort(offset));
+		int n = Math.min(length, key.length);
+		for (int i = 0; i < n; i++) {
+			int cmp = Byte.compareUnsigned(buffer.get(offset + 2 + i), key[i]);
+			if (cmp != 0) {
+				return cmp;
+			}
+		}
+		return Integer.compare(length, key.length);
+	}
+
+	/**
+	 * @param header   The header of the index file
+	 * @param fileSize The total size of the index file
+	 * @param digest   The expected digest of the jar stamps
+	 * @return {@code true} if the index file is complete and matches the given jars
+	 */
+	private static boolean isValid(ByteBuffer header, long fileSize, byte[] digest) {
+		if (header.limit() < HEADER_LENGTH || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+			return false;
+		}
+		var storedDigest = new byte[DIGEST_LENGTH];
+		header.get(8, storedDigest);
+		var size = header.getInt(HEADER_LENGTH - 4);
+		return Arrays.equals(digest, storedDigest) && size >= 0 && fileSize >= HEADER_LENGTH + 4L * size;
+	}
+
+	private static byte[] digest(List<ClassLoaderFactory.JarStamp> jars) {
+		try {
+			var md = MessageDigest.getInstance("SHA-256");
+			for (var jar : jars) {
+				var lastModified = jar.lastModified() == null ? -1 : jar.lastModified().toMillis();
+				md.update((jar.path() + "\0" + jar.size() + "\0" + lastModified + "\n").getBytes(StandardCharsets.UTF_8));
+			}
+			return md.digest();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("Every implementation of the Java platform is required to support SHA-256.", e);
+		}
+	}
+
+	private static ByteBuffer build(List<ClassLoaderFactory.JarStamp> jars, byte[] digest) {
+		var dirs = new TreeMap<byte[], Integer>(UNSIGNED_ORDER);
+		for (int i = 0; i < jars.size(); i++) {
+			var jarIndex = i;
+			try (var zip = new ZipFile(jars.get(i).path().toFile())) {
+				zip.stream().filter(e -> !e.isDirectory()).map(e -> e.getName()).forEach(name -> {
+					var slash = name.lastIndexOf('/');
+					if (slash > 0 && !name.startsWith("META-INF/")) {
+						var dir = name.substring(0, slash).getBytes(StandardCharsets.UTF_8);
+						if (dir.length <= 0xFFFF) {
+							dirs.putIfAbsent(dir, jarIndex); // first jar wins, like on the class path
+						}
+					}
+				});
+			} catch (IOException e) {
+				LOG.debug("Failed to index {}", jars.get(i).path(), e);
+			}
+		}
+
+		var length = HEADER_LENGTH + 4 * dirs.size() + dirs.keySet().stream().mapToInt(dir -> 2 + dir.length + 4).sum();
+		var buffer = ByteBuffer.allocate(length);
+		buffer.putInt(MAGIC).putInt(VERSION).put(digest).putInt(dirs.size());
+		int offset = HEADER_LENGTH + 4 * dirs.size();
+		for (var dir : dirs.keySet()) {
+			buffer.putInt(offset);
+			offset += 2 + dir.length + 4;
+		}
+		dirs.forEach((dir, jarIndex) -> buffer.putShort((short) dir.length).put(dir).putInt(jarIndex));
+		return buffer.flip();
+	}
+
+	private static void write(Path file, ByteBuffer contents) throws IOException {
+		var parent = file.toAbsolutePath().getParent();
+		Files.createDirectories(parent);
+		var tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+		try (var channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+			var duplicate = contents.duplicate();
+			while (duplicate.hasRemaining()) {
+				channel.write(duplicate);
+			}
+		}
+		try {
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+}
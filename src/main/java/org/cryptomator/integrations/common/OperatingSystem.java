@@ -8,9 +8,19 @@ import java.lang.annotation.Repeatable;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.util.Arrays;
 
 /**
- * Restricts the annotated integration provider to one or more operating system(s).
+ * Restricts the annotated integration provider to one or more operating system(s), optionally limited to certain CPU architectures.
+ * <p>
+ * Example:
+ * <pre>
+ * {@code
+ * @OperatingSystem(OperatingSystem.Value.MAC)
+ * @OperatingSystem(value = OperatingSystem.Value.LINUX, architecture = OperatingSystem.Architecture.X64)
+ * public class Foo implements RevealPathService { ... }
+ * }
+ * </pre>
  *
  * @since 1.1.0
  */
@@ -21,6 +31,14 @@ import java.lang.annotation.Target;
 public @interface OperatingSystem {
 	Value value() default Value.UNKNOWN;
 
+	/**
+	 * Restricts the provider to the given CPU architectures on this operating system.
+	 *
+	 * @return Supported architectures, empty if not restricted
+	 * @since 1.9.0
+	 */
+	Architecture[] architecture() default {};
+
 	@Documented
 	@Retention(RetentionPolicy.RUNTIME)
 	@Target({ElementType.TYPE})
@@ -34,22 +52,65 @@ public @interface OperatingSystem {
 		WINDOWS,
 		UNKNOWN;
 
-		private static final String OS_NAME = System.getProperty("os.name", "").toLowerCase();
+		private static final Value CURRENT = detect(System.getProperty("os.name", "").toLowerCase());
 
-		public static Value current() {
-			if (OS_NAME.contains("linux")) {
+		private static Value detect(String osName) {
+			if (osName.contains("linux")) {
 				return LINUX;
-			} else if (OS_NAME.contains("mac")) {
+			} else if (osName.contains("mac")) {
 				return MAC;
-			} else if (OS_NAME.contains("windows")) {
+			} else if (osName.contains("windows")) {
 				return WINDOWS;
 			} else {
 				return UNKNOWN;
 			}
 		}
 
+		public static Value current() {
+			return CURRENT;
+		}
+
+		/**
+		 * Checks whether the given annotation matches the current operating system and architecture.
+		 *
+		 * @param os An {@link OperatingSystem} annotation
+		 * @return {@code true} if the annotated provider may run on this platform
+		 */
 		public static boolean isCurrent(OperatingSystem os) {
-			return current().equals(os.value());
+			return CURRENT == os.value() && Architecture.isCurrent(os.architecture());
+		}
+	}
+
+	/**
+	 * CPU architecture
+	 *
+	 * @since 1.9.0
+	 */
+	enum Architecture {
+		X64,
+		AARCH64,
+		UNKNOWN;
+
+		private static final Architecture CURRENT = detect(System.getProperty("os.arch", "").toLowerCase());
+
+		private static Architecture detect(String osArch) {
+			return switch (osArch) {
+				case "amd64", "x86_64", "x64" -> X64;
+				case "aarch64", "arm64" -> AARCH64;
+				default -> UNKNOWN;
+			};
+		}
+
+		public static Architecture current() {
+			return CURRENT;
+		}
+
+		/**
+		 * @param architectures Supported architectures, empty if not restricted
+		 * @return {@code true} if the given architectures include the current one
+		 */
+		static boolean isCurrent(Architecture... architectures) {
+			return architectures.length == 0 || Arrays.asList(architectures).contains(CURRENT);
 		}
 	}
 }
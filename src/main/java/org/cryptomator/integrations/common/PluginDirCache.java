@@ -0,0 +1,213 @@
+package org.cryptomator.integrations.common;
+
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.module.InvalidModuleDescriptorException;
+import java.lang.module.ModuleDescriptor;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.zip.ZipFile;
+
+/**
+ * Remembers which services are provided by each jar in the plugin dir, so jars only need to be opened when they changed.
+ * <p>
+ * If the system property {@value #CACHE_FILE_KEY} is set, the cache is persisted to the given file and reused across launches.
+ * Entries are keyed by path and only considered valid as long as the size and modification date of the jar are unchanged.
+ */
+final class PluginDirCache {
+
+	private static final Logger LOG = LoggerFactory.getLogger(PluginDirCache.class);
+	static final String CACHE_FILE_KEY = "cryptomator.pluginDir.cacheFile";
+	private static final String SERVICES_PREFIX = "META-INF/services/";
+	private static final String VERSIONS_PREFIX = "META-INF/versions/";
+	private static final String MODULE_INFO = "module-info.class";
+	private static final String VERSION_KEY = "version";
+	private static final String VERSION = "2";
+	private static final Map<Path, PluginDirCache> PERSISTENT = new ConcurrentHashMap<>();
+	private static final PluginDirCache IN_MEMORY = new PluginDirCache(null);
+
+	private final @Nullable Path file;
+	private final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+	private volatile boolean loaded;
+	private volatile boolean dirty;
+
+	@VisibleForTesting
+	PluginDirCache(@Nullable Path file) {
+		this.file = file;
+		this.loaded = file == null;
+	}
+
+	/**
+	 * Returns the cache configured by {@value #CACHE_FILE_KEY}, or a non-persistent one if the property is not set.
+	 *
+	 * @return The plugin dir cache
+	 */
+	static PluginDirCache get() {
+		var val = System.getProperty(CACHE_FILE_KEY);
+		if (val == null || val.isBlank()) {
+			return IN_MEMORY;
+		}
+		try {
+			return PERSISTENT.computeIfAbsent(Path.of(val), PluginDirCache::new);
+		} catch (IllegalArgumentException e) {
+			LOG.debug("{} contains illegal value. Not persisting plugin dir cache.", CACHE_FILE_KEY, e);
+			return IN_MEMORY;
+		}
+	}
+
+	/**
+	 * Determines the services provided by each of the given jars, opening only those jars that are not cached yet,
+	 * and persists the result. Entries of jars not contained in {@code jars} are dropped.
+	 *
+	 * @param jars The jars currently present in the plugin dir
+	 * @return The names of all services provided by each jar
+	 */
+	synchronized Map<ClassLoaderFactory.JarStamp, Set<String>> providedServices(Collection<ClassLoaderFactory.JarStamp> jars) {
+		load();
+		var result = jars.stream().collect(Collectors.toUnmodifiableMap(jar -> jar, this::providedServices));
+		var paths = jars.stream().map(ClassLoaderFactory.JarStamp::path).collect(Collectors.toSet());
+		if (entries.keySet().retainAll(paths)) {
+			dirty = true;
+		}
+		store();
+		return result;
+	}
+
+	private Set<String> providedServices(ClassLoaderFactory.JarStamp jar) {
+		var cached = entries.get(jar.path());
+		if (cached != null && cached.matches(jar)) {
+			return cached.services();
+		}
+		var services = readServices(jar.path());
+		entries.put(jar.path(), new Entry(jar.size(), jar.lastModified() == null ? -1 : jar.lastModified().toMillis(), services));
+		dirty = true;
+		return services;
+	}
+
+	/**
+	 * Reads the names of all services provided by the given jar, i.e. the union of its {@code META-INF/services} entries
+	 * and the {@code provides} clauses of its (possibly versioned) module descriptor.
+	 *
+	 * @param jar Path of a jar file
+	 * @return Names of all provided services, empty if the jar can not be read
+	 */
+	@VisibleForTesting
+	static Set<String> readServices(Path jar) {
+		try (var zip = new ZipFile(jar.toFile())) {
+			var services = new TreeSet<String>();
+			var entries = zip.entries();
+			while (entries.hasMoreElements()) {
+				var entry = entries.nextElement();
+				var name = entry.getName();
+				if (entry.isDirectory()) {
+					continue;
+				} else if (name.startsWith(SERVICES_PREFIX) && name.indexOf('/', SERVICES_PREFIX.length()) == -1) {
+					services.add(name.substring(SERVICES_PREFIX.length()));
+				} else if (name.equals(MODULE_INFO) || name.startsWith(VERSIONS_PREFIX) && name.endsWith("/" + MODULE_INFO)) {
+					try (var in = zip.getInputStream(entry)) {
+						ModuleDescriptor.read(in).provides().forEach(provides -> services.add(provides.service()));
+					}
+				}
+			}
+			return Collections.unmodifiableSet(services);
+		} catch (IOException | InvalidModuleDescriptorException e) {
+			LOG.debug("Failed to read services of {}", jar, e);
+			return Set.of();
+		}
+	}
+
+	private void load() {
+		if (loaded) {
+			return;
+		}
+		loaded = true;
+		assert file != null;
+		if (!Files.isRegularFile(file)) {
+			return;
+		}
+		var props = new Properties();
+		try (var in = Files.newInputStream(file)) {
+			props.load(in);
+		} catch (IOException | IllegalArgumentException e) {
+			LOG.debug("Failed to read plugin dir cache {}", file, e);
+			return;
+		}
+		if (!VERSION.equals(props.getProperty(VERSION_KEY))) {
+			return;
+		}
+		for (var key : props.stringPropertyNames()) {
+			if (key.equals(VERSION_KEY)) {
+				continue;
+			}
+			try {
+				entries.put(Path.of(key), Entry.parse(props.getProperty(key)));
+			} catch (IllegalArgumentException e) {
+				LOG.trace("Ignoring malformed plugin dir cache entry {}", key, e);
+			}
+		}
+	}
+
+	private void store() {
+		if (file == null || !dirty) {
+			return;
+		}
+		var props = new Properties();
+		props.setProperty(VERSION_KEY, VERSION);
+		entries.forEach((path, entry) -> props.setProperty(path.toString(), entry.format()));
+		try {
+			var parent = file.toAbsolutePath().getParent();
+			Files.createDirectories(parent);
+			var tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+			try (var out = Files.newOutputStream(tmp)) {
+				props.store(out, "Generated by " + PluginDirCache.class.getName() + ". Do not edit.");
+			}
+			try {
+				Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+			dirty = false;
+		} catch (IOException e) {
+			LOG.debug("Failed to write plugin dir cache {}", file, e);
+		}
+	}
+
+	/**
+	 * A cached jar, serialized as {@code size;lastModifiedMillis;service1,service2,...}.
+	 */
+	private record Entry(long size, long lastModified, Set<String> services) {
+
+		static Entry parse(String str) throws IllegalArgumentException {
+			var parts = str.split(";", 3);
+			if (parts.length != 3) {
+				throw new IllegalArgumentException("Expected three components: " + str);
+			}
+			var services = parts[2].isEmpty() ? Set.<String>of() : Set.copyOf(Arrays.asList(parts[2].split(",")));
+			return new Entry(Long.parseLong(parts[0]), Long.parseLong(parts[1]), services);
+		}
+
+		String format() {
+			return size + ";" + lastModified + ";" + String.join(",", new TreeSet<>(services));
+		}
+
+		boolean matches(ClassLoaderFactory.JarStamp jar) {
+			return size == jar.size() && jar.lastModified() != null && lastModified == jar.lastModified().toMillis();
+		}
+	}
+
+}
@@ -0,0 +1,196 @@
+package org.cryptomator.integrations.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Finds {@code .jar} files in the plugin dir.
+ * <p>
+ * Other than {@link Files#walk(Path, java.nio.file.FileVisitOption...)}, the traversal is limited to {@link #maxDepth()} levels,
+ * subdirectories are scanned in parallel and file attributes are only read for entries that might be relevant, i.e. jars and
+ * directories above the depth limit. This keeps discovery cheap even if the plugin dir accidentally points to a large tree.
+ * <p>
+ * The result is sorted by path, so it is independent of the traversal order.
+ *
+ * @param maxDepth    Maximum number of directory levels to descend into, {@code 0} to only consider the plugin dir itself
+ * @param followLinks Whether to descend into symbolically linked directories (cycles are detected and skipped), while linked jars are always found
+ * @param parallelism Maximum number of directories scanned concurrently, {@code 1} to scan sequentially
+ */
+record PluginDirScanner(int maxDepth, boolean followLinks, int parallelism) {
+
+	private static final Logger LOG = LoggerFactory.getLogger(PluginDirScanner.class);
+	static final String MAX_DEPTH_KEY = "cryptomator.pluginDir.maxDepth";
+	static final String FOLLOW_LINKS_KEY = "cryptomator.pluginDir.followLinks";
+	static final String PARALLELISM_KEY = "cryptomator.pluginDir.parallelism";
+	static final int DEFAULT_MAX_DEPTH = 3;
+	private static final String JAR_SUFFIX = ".jar";
+	private static final LinkOption[] NOFOLLOW_LINKS = {LinkOption.NOFOLLOW_LINKS};
+	private static final LinkOption[] FOLLOW_LINKS = {};
+
+	PluginDirScanner {
+		if (maxDepth < 0) {
+			throw new IllegalArgumentException("maxDepth must not be negative");
+		}
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be positive");
+		}
+	}
+
+	/**
+	 * Creates a scanner configured by the system properties {@value #MAX_DEPTH_KEY} (defaults to {@value #DEFAULT_MAX_DEPTH}),
+	 * {@value #FOLLOW_LINKS_KEY} (defaults to {@code false}) and {@value #PARALLELISM_KEY} (defaults to the number of processors).
+	 *
+	 * @return A new scanner
+	 */
+	static PluginDirScanner fromSystemProperties() {
+		var maxDepth = intProperty(MAX_DEPTH_KEY, DEFAULT_MAX_DEPTH, 0);
+		var followLinks = Boolean.getBoolean(FOLLOW_LINKS_KEY);
+		var parallelism = intProperty(PARALLELISM_KEY, Runtime.getRuntime().availableProcessors(), 1);
+		return new PluginDirScanner(maxDepth, followLinks, parallelism);
+	}
+
+	private static int intProperty(String key, int defaultValue, int minValue) {
+		var val = System.getProperty(key);
+		if (val == null) {
+			return defaultValue;
+		}
+		try {
+			return Math.max(minValue, Integer.parseInt(val.trim()));
+		} catch (NumberFormatException e) {
+			LOG.debug("{} contains illegal value. Using default {}.", key, defaultValue, e);
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Scans the given directory for jars.
+	 *
+	 * @param dir The plugin dir
+	 * @return Stamps of all found jars, sorted by path
+	 */
+	List<ClassLoaderFactory.JarStamp> scan(Path dir) {
+		BasicFileAttributes attrs;
+		try {
+			attrs = Files.readAttributes(dir, BasicFileAttributes.class); // the configured dir itself may always be a link
+		} catch (IOException e) {
+			LOG.debug("Failed to read plugin dir {}", dir, e);
+			return List.of();
+		}
+		if (attrs.isRegularFile() && isJarName(dir)) {
+			return List.of(ClassLoaderFactory.JarStamp.of(dir, attrs));
+		} else if (!attrs.isDirectory()) {
+			return List.of();
+		}
+
+		var visited = ConcurrentHashMap.<Object>newKeySet();
+		markVisited(visited, dir, attrs);
+		var task = new ScanTask(dir, 0, visited);
+		List<ClassLoaderFactory.JarStamp> result;
+		if (parallelism == 1) {
+			result = task.compute();
+		} else {
+			try (var pool = new ForkJoinPool(parallelism)) {
+				result = pool.invoke(task);
+			}
+		}
+		return result.stream().sorted(Comparator.comparing(ClassLoaderFactory.JarStamp::path)).toList();
+	}
+
+	/**
+	 * Reads the attributes of a plugin dir entry. Links to jars are always resolved, while {@link #followLinks()} only decides
+	 * whether linked directories are reported as directories.
+	 *
+	 * @param entry The entry
+	 * @return The attributes of the entry
+	 * @throws IOException If the attributes can't be read
+	 */
+	BasicFileAttributes readAttributes(Path entry) throws IOException {
+		var attrs = Files.readAttributes(entry, BasicFileAttributes.class, followLinks ? FOLLOW_LINKS : NOFOLLOW_LINKS);
+		if (attrs.isSymbolicLink() && isJarName(entry)) {
+			var target = Files.readAttributes(entry, BasicFileAttributes.class);
+			if (target.isRegularFile()) {
+				return target;
+			}
+		}
+		return attrs;
+	}
+
+	static boolean isJarName(Path path) {
+		var fileName = path.getFileName();
+		return fileName != null && fileName.toString().toLowerCase().endsWith(JAR_SUFFIX);
+	}
+
+	/**
+	 * @return {@code false} if the directory has been visited before (i.e. is part of a symlink cycle)
+	 */
+	private boolean markVisited(Set<Object> visited, Path dir, BasicFileAttributes attrs) {
+		if (!followLinks) {
+			return true; // without following links, each directory is reached exactly once
+		}
+		var key = attrs.fileKey() != null ? attrs.fileKey() : dir.toAbsolutePath().normalize();
+		return visited.add(key);
+	}
+
+	private class ScanTask extends RecursiveTask<List<ClassLoaderFactory.JarStamp>> {
+
+		private final Path dir;
+		private final int depth;
+		private final Set<Object> visited;
+
+		ScanTask(Path dir, int depth, Set<Object> visited) {
+			this.dir = dir;
+			this.depth = depth;
+			this.visited = visited;
+		}
+
+		@Override
+		protected List<ClassLoaderFactory.JarStamp> compute() {
+			var descend = depth < maxDepth;
+			var jars = new ArrayList<ClassLoaderFactory.JarStamp>();
+			var subtasks = new ArrayList<ScanTask>();
+			try (var entries = Files.newDirectoryStream(dir)) {
+				for (var entry : entries) {
+					var isJarName = isJarName(entry);
+					if (!isJarName && !descend) {
+						continue; // no need to stat irrelevant files
+					}
+					BasicFileAttributes attrs;
+					try {
+						attrs = readAttributes(entry);
+					} catch (IOException e) {
+						LOG.trace("Skipping unreadable plugin dir entry {}", entry, e);
+						continue;
+					}
+					if (attrs.isRegularFile() && isJarName) {
+						jars.add(ClassLoaderFactory.JarStamp.of(entry, attrs));
+					} else if (attrs.isDirectory() && descend && markVisited(visited, entry, attrs)) {
+						subtasks.add(new ScanTask(entry, depth + 1, visited));
+					}
+				}
+			} catch (IOException | DirectoryIteratorException e) {
+				LOG.debug("Failed to read plugin dir {}", dir, e);
+			}
+			if (parallelism == 1) {
+				subtasks.forEach(subtask -> jars.addAll(subtask.compute()));
+			} else {
+				invokeAll(subtasks).forEach(subtask -> jars.addAll(subtask.join()));
+			}
+			return jars;
+		}
+	}
+
+}
@@ -0,0 +1,331 @@
+package org.cryptomator.integrations.common;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the plugin dir for added, modified or removed jars and notifies subscribers about services whose providers changed.
+ * <p>
+ * While a watcher is running, {@link IntegrationsLoader} doesn't need to rescan the plugin dir: The set of jars is updated
+ * incrementally based on file system events, and whenever it changes, the {@link IntegrationsLoader#invalidateCache() cache}
+ * is invalidated, so the next lookup picks up the current plugin dir contents.
+ * <p>
+ * Example:
+ * <pre>
+ * {@code
+ * try (var watcher = PluginDirWatcher.start()) {
+ *     watcher.subscribe(RevealPathService.class, service -> revealPathService = IntegrationsLoader.load(RevealPathService.class));
+ *     ...
+ * }
+ * }
+ * </pre>
+ *
+ * @since 1.9.0
+ */
+public final class PluginDirWatcher implements AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(PluginDirWatcher.class);
+	private static final long QUIET_PERIOD_MILLIS = 200; // collect events until the file system has been quiet for this long
+	private static volatile @Nullable PluginDirWatcher active;
+
+	private final Path dir;
+	private final PluginDirScanner scanner;
+	private final WatchService watchService;
+	private final Map<WatchKey, WatchedDir> watchedDirs = new ConcurrentHashMap<>();
+	private final Map<Class<?>, List<Listener>> listeners = new ConcurrentHashMap<>();
+	private final Map<Path, ClassLoaderFactory.JarStamp> jars = new TreeMap<>(); // accessed by watcher thread only, after construction
+	private final Thread thread;
+	private volatile Map<ClassLoaderFactory.JarStamp, Set<String>> providedServices;
+	private volatile ClassLoaderFactory.Fingerprint fingerprint;
+
+	private PluginDirWatcher(Path dir, PluginDirScanner scanner) throws IOException {
+		this.dir = dir;
+		this.scanner = scanner;
+		this.watchService = dir.getFileSystem().newWatchService();
+		try {
+			register(dir, 0);
+		} catch (IOException e) {
+			watchService.close();
+			throw e;
+		}
+		scanner.scan(dir).forEach(jar -> jars.put(jar.path(), jar));
+		this.providedServices = PluginDirCache.get().providedServices(jars.values());
+		this.fingerprint = new ClassLoaderFactory.Fingerprint(dir, List.copyOf(jars.values()));
+		this.thread = Thread.ofVirtual().name("plugin-dir-watcher").unstarted(this::run);
+	}
+
+	/**
+	 * Starts watching the plugin dir specified in the {@code cryptomator.pluginDir} system property.
+	 * <p>
+	 * Only one watcher can be active at a time. It must be {@link #close() closed} when no longer needed.
+	 *
+	 * @return A running watcher
+	 * @throws IllegalStateException If no plugin dir is configured or another watcher is already active
+	 * @throws IOException           If the plugin dir can not be watched
+	 */
+	public static synchronized PluginDirWatcher start() throws IllegalStateException, IOException {
+		if (active != null) {
+			throw new IllegalStateException("Plugin dir already watched");
+		}
+		var dir = ClassLoaderFactory.pluginDir().orElseThrow(() -> new IllegalStateException("cryptomator.pluginDir not set"));
+		var watcher = new PluginDirWatcher(dir, PluginDirScanner.fromSystemProperties());
+		active = watcher;
+		watcher.thread.start();
+		IntegrationsLoader.invalidateCache(); // discard providers loaded before the watcher knew the plugin dir
+		LOG.debug("Watching plugin dir {}", dir);
+		return watcher;
+	}
+
+	/**
+	 * Returns the fingerprint of the given plugin dir, if it is currently watched.
+	 *
+	 * @param dir The plugin dir
+	 * @return The up-to-date fingerprint or empty, if no watcher is active for this dir
+	 */
+	static Optional<ClassLoaderFactory.Fingerprint> fingerprintOf(Path dir) {
+		var watcher = active;
+		if (watcher != null && watcher.dir.equals(dir)) {
+			return Optional.of(watcher.fingerprint);
+		} else {
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Registers a listener that gets notified whenever providers of the given service appear in or disappear from the plugin dir.
+	 * <p>
+	 * Listeners are invoked on the watcher thread after the cache of {@link IntegrationsLoader} has been invalidated.
+	 *
+	 * @param service  The service of interest
+	 * @param listener The listener to add
+	 */
+	public void subscribe(Class<?> service, Listener listener) {
+		Objects.requireNonNull(listener);
+		listeners.computeIfAbsent(service, k -> new CopyOnWriteArrayList<>()).add(listener);
+	}
+
+	/**
+	 * Unregisters a listener previously added via {@link #subscribe(Class, Listener)}.
+	 *
+	 * @param service  The service of interest
+	 * @param listener The listener to remove
+	 */
+	public void unsubscribe(Class<?> service, Listener listener) {
+		var serviceListeners = listeners.get(service);
+		if (serviceListeners != null) {
+			serviceListeners.remove(listener);
+		}
+	}
+
+	/**
+	 * Stops watching the plugin dir.
+	 */
+	@Override
+	public void close() {
+		synchronized (PluginDirWatcher.class) {
+			if (active == this) {
+				active = null;
+			}
+		}
+		try {
+			watchService.close();
+		} catch (IOException e) {
+			LOG.warn("Failed to close watch service.", e);
+		}
+		thread.interrupt();
+	}
+
+	private void run() {
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				var key = watchService.take();
+				var changed = false;
+				do {
+					changed |= process(key);
+					key = watchService.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+				} while (key != null);
+				if (changed) {
+					update();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ClosedWatchServiceException e) {
+			// closed, stop watching
+		}
+		LOG.debug("Stopped watching plugin dir {}", dir);
+	}
+
+	/**
+	 * Applies the events of the given key to {@link #jars}.
+	 *
+	 * @return {@code true} if any relevant event occurred
+	 */
+	private boolean process(WatchKey key) {
+		var watched = watchedDirs.get(key);
+		var changed = false;
+		for (var event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW || watched == null) {
+				rescan();
+				changed = true;
+			} else if (event.context() instanceof Path name) {
+				changed |= process(watched, watched.path.resolve(name), event.kind());
+			}
+		}
+		if (!key.reset()) {
+			watchedDirs.remove(key);
+		}
+		return changed;
+	}
+
+	private boolean process(WatchedDir parent, Path path, WatchEvent.Kind<?> kind) {
+		BasicFileAttributes attrs;
+		try {
+			attrs = scanner.readAttributes(path);
+		} catch (IOException e) {
+			attrs = null; // deleted
+		}
+		if (attrs != null && attrs.isDirectory()) {
+			var depth = parent.depth + 1;
+			if (depth > scanner.maxDepth() || kind != StandardWatchEventKinds.ENTRY_CREATE) {
+				return false;
+			}
+			try {
+				register(path, depth);
+			} catch (IOException e) {
+				LOG.debug("Failed to watch {}", path, e);
+			}
+			var subScanner = new PluginDirScanner(scanner.maxDepth() - depth, scanner.followLinks(), 1);
+			subScanner.scan(path).forEach(jar -> jars.put(jar.path(), jar));
+			return true;
+		} else if (attrs != null && attrs.isRegularFile()) {
+			if (!PluginDirScanner.isJarName(path)) {
+				return false;
+			}
+			var jar = ClassLoaderFactory.JarStamp.of(path, attrs);
+			return !jar.equals(jars.put(path, jar));
+		} else {
+			// deleted file or directory: drop all jars at or below this path
+			return jars.keySet().removeIf(p -> p.startsWith(path));
+		}
+	}
+
+	private void register(Path dir, int depth) throws IOException {
+		var key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+		watchedDirs.put(key, new WatchedDir(dir, depth));
+		if (depth >= scanner.maxDepth()) {
+			return;
+		}
+		var linkOptions = scanner.followLinks() ? new LinkOption[0] : new LinkOption[]{LinkOption.NOFOLLOW_LINKS};
+		try (var entries = Files.newDirectoryStream(dir, entry -> Files.isDirectory(entry, linkOptions))) {
+			for (var subdir : entries) {
+				register(subdir, depth + 1); // registering a dir twice yields the same key
+			}
+		} catch (DirectoryIteratorException e) {
+			throw e.getCause();
+		}
+	}
+
+	private void rescan() {
+		LOG.debug("Rescanning plugin dir {}", dir);
+		jars.clear();
+		scanner.scan(dir).forEach(jar -> jars.put(jar.path(), jar));
+		try {
+			register(dir, 0);
+		} catch (IOException e) {
+			LOG.debug("Failed to watch {}", dir, e);
+		}
+	}
+
+	/**
+	 * Publishes the current {@link #jars}, invalidates cached providers and notifies listeners of affected services.
+	 */
+	private void update() {
+		var newFingerprint = new ClassLoaderFactory.Fingerprint(dir, List.copyOf(jars.values()));
+		if (newFingerprint.equals(fingerprint)) {
+			return;
+		}
+		var oldServices = providedServices;
+		var newServices = PluginDirCache.get().providedServices(jars.values());
+		var oldProviders = providersByService(oldServices);
+		var newProviders = providersByService(newServices);
+		var affected = new HashSet<String>();
+		oldProviders.forEach((service, providers) -> {
+			if (!providers.equals(newProviders.get(service))) {
+				affected.add(service);
+			}
+		});
+		newProviders.forEach((service, providers) -> {
+			if (!providers.equals(oldProviders.get(service))) {
+				affected.add(service);
+			}
+		});
+		this.providedServices = newServices;
+		this.fingerprint = newFingerprint;
+		LOG.debug("Contents of plugin dir {} changed. Affected services: {}", dir, affected);
+		IntegrationsLoader.invalidateCache();
+		listeners.forEach((service, serviceListeners) -> {
+			if (affected.contains(service.getName())) {
+				serviceListeners.forEach(listener -> notifyListener(service, listener));
+			}
+		});
+	}
+
+	private static Map<String, Set<ClassLoaderFactory.JarStamp>> providersByService(Map<ClassLoaderFactory.JarStamp, Set<String>> providedServices) {
+		var result = new HashMap<String, Set<ClassLoaderFactory.JarStamp>>();
+		providedServices.forEach((jar, services) -> services.forEach(service -> result.computeIfAbsent(service, k -> new HashSet<>()).add(jar)));
+		return result;
+	}
+
+	private static void notifyListener(Class<?> service, Listener listener) {
+		try {
+			listener.providersChanged(service);
+		} catch (RuntimeException e) {
+			LOG.warn("Listener failed to handle changed providers of {}.", service.getName(), e);
+		}
+	}
+
+	private record WatchedDir(Path path, int depth) {
+	}
+
+	/**
+	 * Gets notified about changed providers of a service.
+	 *
+	 * @see #subscribe(Class, Listener)
+	 */
+	@FunctionalInterface
+	public interface Listener {
+
+		/**
+		 * Invoked after providers of the given service appeared in or disappeared from the plugin dir.
+		 *
+		 * @param service The service whose providers changed
+		 */
+		void providersChanged(Class<?> service);
+	}
+
+}
@@ -0,0 +1,103 @@
+package org.cryptomator.integrations.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.module.Configuration;
+import java.lang.module.FindException;
+import java.lang.module.ModuleDescriptor;
+import java.lang.module.ModuleFinder;
+import java.lang.module.ModuleReference;
+import java.lang.module.ResolutionException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Loads plugins into isolated {@link ModuleLayer module layers}, one per plugin group.
+ * <p>
+ * A plugin group consists of all jars within the same direct subdirectory of the plugin dir. Jars located directly in the
+ * plugin dir form a group of their own. Each group is resolved against the layer of this module, so plugins may bundle
+ * different versions of the same dependency without colliding, and classes are looked up by package rather than by probing jars.
+ * <p>
+ * Groups that can not be resolved (e.g. due to missing dependencies or jars not being valid automatic modules) are left
+ * for the flat plugin class loader.
+ */
+final class PluginLayers {
+
+	private static final Logger LOG = LoggerFactory.getLogger(PluginLayers.class);
+	static final String MODULE_LAYERS_KEY = "cryptomator.pluginDir.moduleLayers";
+
+	private PluginLayers() {
+	}
+
+	/**
+	 * @param layers     Successfully created layers
+	 * @param unresolved Jars not loaded into any layer
+	 */
+	record Result(List<ModuleLayer> layers, List<ClassLoaderFactory.JarStamp> unresolved) {
+	}
+
+	/**
+	 * Creates a module layer for each plugin group.
+	 *
+	 * @param dir  The plugin dir
+	 * @param jars All jars in the plugin dir
+	 * @return The created layers as well as the jars that could not be loaded into a layer
+	 */
+	static Result create(Path dir, List<ClassLoaderFactory.JarStamp> jars) {
+		var parent = Objects.requireNonNullElse(PluginLayers.class.getModule().getLayer(), ModuleLayer.boot());
+		var parentLoader = PluginLayers.class.getClassLoader();
+		var layers = new ArrayList<ModuleLayer>();
+		var unresolved = new ArrayList<ClassLoaderFactory.JarStamp>();
+		groups(dir, jars).forEach((group, members) -> {
+			try {
+				layers.add(defineLayer(parent, parentLoader, members));
+				LOG.debug("Created module layer for plugin group {}", group);
+			} catch (FindException | ResolutionException | LayerInstantiationException e) {
+				LOG.warn("Failed to create module layer for plugin group {}. Falling back to class path.", group, e);
+				unresolved.addAll(members);
+			}
+		});
+		return new Result(List.copyOf(layers), List.copyOf(unresolved));
+	}
+
+	/**
+	 * Groups the given jars by the direct subdirectory of the plugin dir containing them.
+	 *
+	 * @param dir  The plugin dir
+	 * @param jars Jars in the plugin dir
+	 * @return The jars of each group, ordered by group name
+	 */
+	static Map<Path, List<ClassLoaderFactory.JarStamp>> groups(Path dir, List<ClassLoaderFactory.JarStamp> jars) {
+		return jars.stream().collect(Collectors.groupingBy(jar -> {
+			var relPath = dir.relativize(jar.path());
+			return relPath.getNameCount() > 1 ? relPath.getName(0) : relPath;
+		}, TreeMap::new, Collectors.toList()));
+	}
+
+	private static ModuleLayer defineLayer(ModuleLayer parent, ClassLoader parentLoader, List<ClassLoaderFactory.JarStamp> jars) {
+		var finder = ModuleFinder.of(jars.stream().map(ClassLoaderFactory.JarStamp::path).toArray(Path[]::new));
+		var roots = finder.findAll().stream().map(ModuleReference::descriptor).map(ModuleDescriptor::name).collect(Collectors.toSet());
+		var configuration = Configuration.resolve(finder, List.of(parent.configuration()), ModuleFinder.of(), roots);
+		return ModuleLayer.defineModulesWithOneLoader(configuration, List.of(parent), parentLoader).layer();
+	}
+
+	/**
+	 * Checks whether any module in the given layer (not including its parents) provides the given service.
+	 *
+	 * @param layer   A plugin layer
+	 * @param service The service
+	 * @return {@code true} if the layer contains a provider of the service
+	 */
+	static boolean provides(ModuleLayer layer, Class<?> service) {
+		return layer.modules().stream()
+				.flatMap(module -> module.getDescriptor().provides().stream())
+				.anyMatch(provides -> provides.service().equals(service.getName()));
+	}
+
+}
@@ -0,0 +1,72 @@
+package org.cryptomator.integrations.common;
+
+import java.time.Duration;
+
+/**
+ * Describes how a single service provider candidate has been evaluated during discovery.
+ *
+ * @param service            The service class
+ * @param implementationName Fully qualified class name of the service provider
+ * @param priority           The {@link Priority} of the service provider
+ * @param outcome            The result of the evaluation
+ * @param classLoading       Time spent loading the provider class
+ * @param staticCheck        Time spent in static {@link CheckAvailability} methods (including class initialization)
+ * @param instantiation      Time spent instantiating the provider
+ * @param instanceCheck      Time spent in non-static {@link CheckAvailability} methods
+ * @see DiscoveryListener
+ * @since 1.9.0
+ */
+public record ProviderEvaluation(Class<?> service,
+								 String implementationName,
+								 int priority,
+								 Outcome outcome,
+								 Duration classLoading,
+								 Duration staticCheck,
+								 Duration instantiation,
+								 Duration instanceCheck) {
+
+	/**
+	 * @return The total time spent evaluating the service provider
+	 */
+	public Duration total() {
+		return classLoading.plus(staticCheck).plus(instantiation).plus(instanceCheck);
+	}
+
+	public enum Outcome {
+		/**
+		 * The provider has been instantiated and passed all availability checks.
+		 */
+		AVAILABLE,
+
+		/**
+		 * The provider is restricted to a different {@link OperatingSystem}.
+		 */
+		UNSUPPORTED_OPERATING_SYSTEM,
+
+		/**
+		 * A static {@link CheckAvailability} method returned {@code false} or failed.
+		 */
+		FAILED_STATIC_CHECK,
+
+		/**
+		 * The provider could not be instantiated.
+		 */
+		FAILED_INSTANTIATION,
+
+		/**
+		 * A non-static {@link CheckAvailability} method returned {@code false} or failed.
+		 */
+		FAILED_INSTANCE_CHECK,
+
+		/**
+		 * The provider has not been checked and instantiated within its time budget.
+		 */
+		TIMED_OUT,
+
+		/**
+		 * The evaluation, performed within a time budget, was aborted by an unexpected exception or error.
+		 */
+		FAILED
+	}
+
+}
@@ -0,0 +1,64 @@
+package org.cryptomator.integrations.common;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR counterpart of {@link ProviderEvaluation}.
+ * <p>
+ * Must only be loaded if the {@code jdk.jfr} module is present, see {@link DiscoveryEvents}.
+ */
+@Name("org.cryptomator.integrations.ProviderEvaluation")
+@Label("Service Provider Evaluation")
+@Description("Evaluation of a service provider candidate by the IntegrationsLoader")
+@Category({"Cryptomator", "Integrations"})
+final class ProviderEvaluationEvent extends Event {
+
+	@Label("Service")
+	String service;
+
+	@Label("Implementation")
+	String implementation;
+
+	@Label("Priority")
+	int priority;
+
+	@Label("Outcome")
+	String outcome;
+
+	@Label("Class Loading")
+	@Timespan
+	long classLoading;
+
+	@Label("Static Check")
+	@Timespan
+	long staticCheck;
+
+	@Label("Instantiation")
+	@Timespan
+	long instantiation;
+
+	@Label("Instance Check")
+	@Timespan
+	long instanceCheck;
+
+	static void commit(ProviderEvaluation evaluation) {
+		var event = new ProviderEvaluationEvent();
+		if (event.isEnabled()) {
+			event.service = evaluation.service().getName();
+			event.implementation = evaluation.implementationName();
+			event.priority = evaluation.priority();
+			event.outcome = evaluation.outcome().name();
+			event.classLoading = evaluation.classLoading().toNanos();
+			event.staticCheck = evaluation.staticCheck().toNanos();
+			event.instantiation = evaluation.instantiation().toNanos();
+			event.instanceCheck = evaluation.instanceCheck().toNanos();
+			event.commit();
+		}
+	}
+
+}
@@ -0,0 +1,88 @@
+package org.cryptomator.integrations.common;
+
+import java.util.Optional;
+
+/**
+ * A service provider that has been discovered but not yet instantiated.
+ * <p>
+ * Handles expose the metadata of a provider, which can be read without creating an instance, e.g. to list all
+ * providers in a settings UI. The provider is only instantiated when invoking {@link #get()}.
+ *
+ * @param <T> Type of the service
+ * @see IntegrationsLoader#loadAllLazy(Class)
+ * @since 1.9.0
+ */
+public final class ProviderHandle<T> {
+
+	private final Candidate<T> candidate;
+	private Optional<T> instance; // guarded by this
+
+	ProviderHandle(Candidate<T> candidate) {
+		this.candidate = candidate;
+	}
+
+	/**
+	 * @return The service class
+	 */
+	public Class<T> service() {
+		return candidate.service();
+	}
+
+	/**
+	 * @return The class of the service provider
+	 */
+	public Class<? extends T> type() {
+		return candidate.provider().type();
+	}
+
+	/**
+	 * @return The {@link Priority} of the service provider
+	 */
+	public int priority() {
+		return candidate.priority();
+	}
+
+	/**
+	 * Returns the value of the {@link DisplayName} annotation of the service provider.
+	 * <p>
+	 * Note that {@link LocalizedDisplayName} is not taken into account. Use {@link NamedServiceProvider#getName()} on the
+	 * instance instead, if a localized name is required.
+	 *
+	 * @return The display name or empty, if the service provider is not annotated
+	 */
+	public Optional<String> displayName() {
+		return Optional.ofNullable(type().getAnnotation(DisplayName.class)).map(DisplayName::value);
+	}
+
+	/**
+	 * Checks whether the service provider supports the current {@link OperatingSystem} and passes all static
+	 * {@link CheckAvailability availability checks}.
+	 * <p>
+	 * Availability checks on instance methods require an instance and are therefore deferred until {@link #get()}.
+	 *
+	 * @return {@code true} if the service provider is potentially available
+	 */
+	public boolean isAvailable() {
+		return IntegrationsLoader.isStaticallyAvailable(type());
+	}
+
+	/**
+	 * Instantiates the service provider, if it is available.
+	 * <p>
+	 * The instance is created on first invocation only, subsequent invocations return the same result.
+	 *
+	 * @return The service provider instance or empty, if it is not available or could not be instantiated
+	 */
+	public synchronized Optional<T> get() {
+		if (instance == null) {
+			instance = IntegrationsLoader.evaluate(candidate);
+		}
+		return instance;
+	}
+
+	@Override
+	public String toString() {
+		return "ProviderHandle[" + type().getName() + ", priority=" + priority() + "]";
+	}
+
+}
@@ -0,0 +1,151 @@
+package org.cryptomator.integrations.common;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Metadata of service providers, generated at build time by the {@link ProviderIndexProcessor}.
+ * <p>
+ * Allows {@link IntegrationsLoader} to order and filter service providers without reflectively scanning their annotations and methods.
+ * Providers not contained in any index are still inspected using reflection.
+ */
+class ProviderIndex {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ProviderIndex.class);
+	static final String RESOURCE_NAME = "META-INF/cryptomator-integrations-index.properties";
+	static final String PRIORITY_SUFFIX = ".priority";
+	static final String OS_SUFFIX = ".os";
+	static final String STATIC_CHECKS_SUFFIX = ".checks.static";
+	static final String INSTANCE_CHECKS_SUFFIX = ".checks.instance";
+	private static final ProviderIndex EMPTY = new ProviderIndex(Map.of());
+	private static final Map<ClassLoader, ProviderIndex> INDICES = Collections.synchronizedMap(new WeakHashMap<>());
+
+	private final Map<String, Entry> entries;
+
+	private ProviderIndex(Map<String, Entry> entries) {
+		this.entries = entries;
+	}
+
+	/**
+	 * Looks up the index entry of the given provider class.
+	 *
+	 * @param type The provider class
+	 * @return The index entry or empty if the given type hasn't been indexed
+	 */
+	static Optional<Entry> lookup(Class<?> type) {
+		var classLoader = type.getClassLoader();
+		if (classLoader == null) {
+			return Optional.empty();
+		}
+		return Optional.ofNullable(INDICES.computeIfAbsent(classLoader, ProviderIndex::load).entries.get(type.getName()));
+	}
+
+	private static ProviderIndex load(ClassLoader classLoader) {
+		try {
+			var resources = classLoader.getResources(RESOURCE_NAME);
+			if (!resources.hasMoreElements()) {
+				return EMPTY;
+			}
+			var entries = new HashMap<String, Entry>();
+			while (resources.hasMoreElements()) {
+				var url = resources.nextElement();
+				try (var in = url.openStream()) {
+					entries.putAll(parse(in));
+				} catch (IOException | IllegalArgumentException e) {
+					LOG.warn("Ignoring malformed provider index {}", url, e);
+				}
+			}
+			return new ProviderIndex(Map.copyOf(entries));
+		} catch (IOException e) {
+			LOG.debug("Failed to read provider indices", e);
+			return EMPTY;
+		}
+	}
+
+	static Map<String, Entry> parse(InputStream in) throws IOException, IllegalArgumentException {
+		var props = new Properties();
+		props.load(in);
+		var result = new HashMap<String, Entry>();
+		for (var key : props.stringPropertyNames()) {
+			if (!key.endsWith(PRIORITY_SUFFIX)) {
+				continue;
+			}
+			var className = key.substring(0, key.length() - PRIORITY_SUFFIX.length());
+			var priority = Integer.parseInt(props.getProperty(key));
+			var platforms = split(props.getProperty(className + OS_SUFFIX)).stream().map(Platform::parse).toList();
+			var staticChecks = split(props.getProperty(className + STATIC_CHECKS_SUFFIX));
+			var instanceChecks = split(props.getProperty(className + INSTANCE_CHECKS_SUFFIX));
+			result.put(className, new Entry(priority, platforms, staticChecks, instanceChecks));
+		}
+		return result;
+	}
+
+	private static List<String> split(@Nullable String value) {
+		if (value == null || value.isBlank()) {
+			return List.of();
+		}
+		return Arrays.stream(value.split(",")).map(String::trim).toList();
+	}
+
+	/**
+	 * Indexed metadata of a single provider class.
+	 *
+	 * @param priority       The value of {@link Priority}
+	 * @param platforms      The values of all {@link OperatingSystem} annotations, empty if not restricted
+	 * @param staticChecks   Names of all static {@link CheckAvailability} methods
+	 * @param instanceChecks Names of all non-static {@link CheckAvailability} methods
+	 */
+	record Entry(int priority, List<Platform> platforms, List<String> staticChecks, List<String> instanceChecks) {
+
+		boolean isSupportedOperatingSystem() {
+			return platforms.isEmpty() || platforms.stream().anyMatch(Platform::isCurrent);
+		}
+
+		List<String> checks(boolean isStatic) {
+			return isStatic ? staticChecks : instanceChecks;
+		}
+	}
+
+	/**
+	 * A single {@link OperatingSystem} annotation, serialized as {@code OS[:ARCH[+ARCH...]]}, e.g. {@code LINUX:X64+AARCH64}.
+	 *
+	 * @param os            The operating system
+	 * @param architectures The supported architectures, empty if not restricted
+	 */
+	record Platform(OperatingSystem.Value os, Set<OperatingSystem.Architecture> architectures) {
+
+		static Platform parse(String str) throws IllegalArgumentException {
+			var parts = str.split(":", 2);
+			var os = OperatingSystem.Value.valueOf(parts[0]);
+			var architectures = EnumSet.noneOf(OperatingSystem.Architecture.class);
+			if (parts.length == 2) {
+				Arrays.stream(parts[1].split("\\+")).map(OperatingSystem.Architecture::valueOf).forEach(architectures::add);
+			}
+			return new Platform(os, Collections.unmodifiableSet(architectures));
+		}
+
+		static String format(OperatingSystem annotation) {
+			var architectures = Arrays.stream(annotation.architecture()).map(Enum::name).distinct().toList();
+			return architectures.isEmpty() ? annotation.value().name() : annotation.value().name() + ":" + String.join("+", architectures);
+		}
+
+		boolean isCurrent() {
+			return os == OperatingSystem.Value.current() && OperatingSystem.Architecture.isCurrent(architectures.toArray(OperatingSystem.Architecture[]::new));
+		}
+	}
+
+}
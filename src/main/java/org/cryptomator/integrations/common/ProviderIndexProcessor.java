@@ -0,0 +1,115 @@
+package org.cryptomator.integrations.common;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Generates a {@link ProviderIndex} for all classes annotated with {@link Priority}, {@link OperatingSystem} or {@link CheckAvailability}.
+ * <p>
+ * To use it, add this library to the annotation processor path of your plugin and name this processor explicitly, e.g. using
+ * {@code javac -processor} or the {@code annotationProcessorPaths} and {@code annotationProcessors} of the maven-compiler-plugin.
+ * It is deliberately not registered as a service, so it doesn't run in every build depending on this library.
+ *
+ * @since 1.9.0
+ */
+@SupportedAnnotationTypes({
+		"org.cryptomator.integrations.common.Priority",
+		"org.cryptomator.integrations.common.OperatingSystem",
+		"org.cryptomator.integrations.common.OperatingSystem.OperatingSystems",
+		"org.cryptomator.integrations.common.CheckAvailability"
+})
+public class ProviderIndexProcessor extends AbstractProcessor {
+
+	private final Map<String, TypeElement> indexedTypes = new TreeMap<>();
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		for (var annotation : annotations) {
+			for (var element : roundEnv.getElementsAnnotatedWith(annotation)) {
+				if (element.getKind() == ElementKind.CLASS && !element.getModifiers().contains(Modifier.ABSTRACT)) {
+					var type = (TypeElement) element;
+					indexedTypes.put(processingEnv.getElementUtils().getBinaryName(type).toString(), type);
+				}
+			}
+		}
+		if (roundEnv.processingOver() && !indexedTypes.isEmpty()) {
+			writeIndex();
+		}
+		return false; // don't claim the annotations
+	}
+
+	private void writeIndex() {
+		var lines = new ArrayList<String>();
+		lines.add("# Generated by " + ProviderIndexProcessor.class.getName() + ". Do not edit.");
+		indexedTypes.forEach((className, type) -> {
+			var priority = type.getAnnotation(Priority.class);
+			var operatingSystems = type.getAnnotationsByType(OperatingSystem.class);
+			var checked = type.getAnnotation(CheckAvailability.class) != null;
+			lines.add(className + ProviderIndex.PRIORITY_SUFFIX + "=" + (priority == null ? Priority.DEFAULT : priority.value()));
+			lines.add(className + ProviderIndex.OS_SUFFIX + "=" + Arrays.stream(operatingSystems).map(ProviderIndex.Platform::format).distinct().collect(Collectors.joining(",")));
+			lines.add(className + ProviderIndex.STATIC_CHECKS_SUFFIX + "=" + (checked ? String.join(",", availabilityChecks(type, true)) : ""));
+			lines.add(className + ProviderIndex.INSTANCE_CHECKS_SUFFIX + "=" + (checked ? String.join(",", availabilityChecks(type, false)) : ""));
+		});
+		var originatingElements = indexedTypes.values().toArray(Element[]::new);
+		try {
+			var file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", ProviderIndex.RESOURCE_NAME, originatingElements);
+			try (var writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.ISO_8859_1)) {
+				for (var line : lines) {
+					writer.write(line);
+					writer.write('\n');
+				}
+			}
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to write " + ProviderIndex.RESOURCE_NAME + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Collects the names of all methods (including inherited ones) considered by {@link IntegrationsLoader} as availability checks.
+	 */
+	private List<String> availabilityChecks(TypeElement type, boolean isStatic) {
+		var members = processingEnv.getElementUtils().getAllMembers(type);
+		return ElementFilter.methodsIn(members).stream()
+				.filter(m -> m.getEnclosingElement().getKind() == ElementKind.CLASS)
+				.filter(m -> m.getAnnotation(CheckAvailability.class) != null)
+				.filter(m -> isAvailabilityCheck(m, isStatic))
+				.map(m -> m.getSimpleName().toString())
+				.distinct()
+				.sorted()
+				.toList();
+	}
+
+	private static boolean isAvailabilityCheck(ExecutableElement m, boolean isStatic) {
+		return m.getModifiers().contains(Modifier.PUBLIC)
+				&& m.getReturnType().getKind() == TypeKind.BOOLEAN
+				&& m.getParameters().isEmpty()
+				&& m.getModifiers().contains(Modifier.STATIC) == isStatic;
+	}
+
+}
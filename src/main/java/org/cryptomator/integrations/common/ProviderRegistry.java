@@ -0,0 +1,244 @@
+package org.cryptomator.integrations.common;
+
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Memoizes the outcome of service provider discovery per service type and class loader.
+ * <p>
+ * Each entry is computed at most once until it gets {@link #invalidate(Class) invalidated}. Entries are evaluated lazily,
+ * i.e. the discovery only advances as far as requested by consumers of the returned stream. This way, looking up only the
+ * first provider doesn't require checking and instantiating all others.
+ * <p>
+ * The discovery runs without holding any lock, so providers may safely look up other services while being checked or
+ * instantiated. Only concurrent lookups requiring the same not yet evaluated provider wait for each other. Hence, like with
+ * class initialization, providers must not look up services cyclically: A recursive lookup within the same thread fails
+ * with an {@link IllegalStateException}, while a cycle spanning multiple threads blocks them.
+ */
+class ProviderRegistry {
+
+	private static final Map<Key, Entry> CACHE = new ConcurrentHashMap<>();
+
+	private ProviderRegistry() {
+	}
+
+	/**
+	 * Returns the memoized providers of the given service, running the discovery if no cached result exists.
+	 *
+	 * @param service     Service class
+	 * @param classLoader Class loader used during discovery
+	 * @param discovery   The actual discovery, invoked on cache misses only
+	 * @param <T>         Type of the service
+	 * @return An ordered stream of service providers, lazily advancing the discovery if required
+	 */
+	@VisibleForTesting
+	static <T> Stream<T> get(Class<T> service, @Nullable ClassLoader classLoader, Supplier<Stream<T>> discovery) {
+		return get(service, classLoader, null, null, recorder -> discovery.get());
+	}
+
+	/**
+	 * Returns the memoized providers of the given service like {@link #get(Class, ClassLoader, Supplier)}, but caches them
+	 * separately for each variant of the discovery.
+	 *
+	 * @param service     Service class
+	 * @param classLoader Class loader used during discovery
+	 * @param variant     Distinguishes discoveries with different semantics, {@code null} for the default discovery
+	 * @param lease       The plugin class loader used during discovery, if any, which gets retained by a newly created entry for as long as it is reachable
+	 * @param discovery   The actual discovery, invoked on cache misses only with a listener recording the evaluations of this entry
+	 * @param <T>         Type of the service
+	 * @return An ordered stream of service providers, lazily advancing the discovery if required
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> Stream<T> get(Class<T> service, @Nullable ClassLoader classLoader, @Nullable String variant, @Nullable SharedClassLoader lease, Function<DiscoveryListener, Stream<T>> discovery) {
+		return (Stream<T>) entry(service, classLoader, variant, lease, discovery).stream();
+	}
+
+	/**
+	 * Completes the memoized discovery of the given service like {@link #get(Class, ClassLoader, String, SharedClassLoader, Function)}
+	 * and returns the evaluations recorded by it.
+	 *
+	 * @param service     Service class
+	 * @param classLoader Class loader used during discovery
+	 * @param variant     Distinguishes discoveries with different semantics, {@code null} for the default discovery
+	 * @param lease       The plugin class loader used during discovery, if any
+	 * @param discovery   The actual discovery, invoked on cache misses only
+	 * @return The evaluations of all candidates of the cached discovery, in no particular order
+	 */
+	static List<ProviderEvaluation> evaluations(Class<?> service, @Nullable ClassLoader classLoader, @Nullable String variant, @Nullable SharedClassLoader lease, Function<DiscoveryListener, ? extends Stream<?>> discovery) {
+		var entry = entry(service, classLoader, variant, lease, discovery);
+		entry.stream().forEach(provider -> {}); // evaluate remaining candidates
+		return List.copyOf(entry.evaluations.values());
+	}
+
+	private static Entry entry(Class<?> service, @Nullable ClassLoader classLoader, @Nullable String variant, @Nullable SharedClassLoader lease, Function<DiscoveryListener, ? extends Stream<?>> discovery) {
+		var key = new Key(service, classLoader, variant);
+		return CACHE.computeIfAbsent(key, k -> {
+			var newEntry = new Entry(k, discovery);
+			if (lease != null) {
+				lease.retainWhileReachable(newEntry); // keeps the class loader open until discovery completed, even if invalidated meanwhile
+			}
+			return newEntry;
+		});
+	}
+
+	/**
+	 * Drops all cached providers of the given service, regardless of the class loader.
+	 *
+	 * @param service Service class
+	 */
+	static void invalidate(Class<?> service) {
+		CACHE.keySet().removeIf(key -> key.service.equals(service));
+	}
+
+	/**
+	 * Drops all cached providers.
+	 */
+	static void invalidateAll() {
+		CACHE.clear();
+	}
+
+	@VisibleForTesting
+	static boolean isCached(Class<?> service, @Nullable ClassLoader classLoader) {
+		return isCached(service, classLoader, null);
+	}
+
+	@VisibleForTesting
+	static boolean isCached(Class<?> service, @Nullable ClassLoader classLoader, @Nullable String variant) {
+		return CACHE.containsKey(new Key(service, classLoader, variant));
+	}
+
+	private record Key(Class<?> service, @Nullable ClassLoader classLoader, @Nullable String variant) {
+	}
+
+	private static class Entry {
+
+		private static final Object END = new Object(); // marks the end of the discovery
+
+		private final Key key;
+		private final List<FutureTask<Object>> elements = new ArrayList<>(); // guarded by this, each computing the next provider or END
+		private final Map<String, ProviderEvaluation> evaluations = new ConcurrentHashMap<>(); // by implementation name
+		private Function<DiscoveryListener, ? extends Stream<?>> discovery; // accessed by the first element's task, null once started
+		private Iterator<?> source; // accessed by one element's task at a time, as each task is only created after its predecessor completed
+		private volatile @Nullable Thread evaluatingThread;
+
+		Entry(Key key, Function<DiscoveryListener, ? extends Stream<?>> discovery) {
+			this.key = key;
+			this.discovery = discovery;
+		}
+
+		Stream<?> stream() {
+			var iterator = new Iterator<>() {
+				private int index = 0;
+
+				@Override
+				public boolean hasNext() {
+					return element(index) != END;
+				}
+
+				@Override
+				public Object next() {
+					var element = element(index);
+					if (element == END) {
+						throw new NoSuchElementException();
+					}
+					index++;
+					return element;
+				}
+			};
+			return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+		}
+
+		/**
+		 * Returns the element at the given index, advancing the discovery if required. The discovery runs without holding
+		 * the lock of this entry, so only threads requiring the same element wait for each other.
+		 *
+		 * @return The element or {@link #END}, if the discovery found less elements
+		 */
+		private Object element(int index) {
+			if (evaluatingThread == Thread.currentThread()) {
+				throw new IllegalStateException("Recursive lookup of " + key.service().getName() + " during its own discovery");
+			}
+			while (true) {
+				FutureTask<Object> task;
+				synchronized (this) {
+					task = index < elements.size() ? elements.get(index) : pendingTask();
+				}
+				var element = await(task);
+				synchronized (this) {
+					if (element == END || index < elements.size() && elements.get(index) == task) {
+						return element;
+					}
+				}
+			}
+		}
+
+		/**
+		 * @return The task computing the last element, or a new task computing the next one, if the last one found an element
+		 */
+		private FutureTask<Object> pendingTask() {
+			assert Thread.holdsLock(this);
+			var last = elements.isEmpty() ? null : elements.getLast();
+			if (last != null && (last.state() != Future.State.SUCCESS || last.resultNow() == END)) {
+				return last;
+			}
+			var task = new FutureTask<>(this::advance);
+			elements.add(task);
+			return task;
+		}
+
+		private Object advance() {
+			evaluatingThread = Thread.currentThread();
+			try {
+				if (discovery != null) {
+					source = discovery.apply(evaluation -> evaluations.put(evaluation.implementationName(), evaluation)).iterator();
+					discovery = null;
+				}
+				return source.hasNext() ? source.next() : END;
+			} finally {
+				evaluatingThread = null;
+			}
+		}
+
+		private Object await(FutureTask<Object> task) {
+			task.run(); // no-op if already completed or running in another thread
+			var interrupted = false;
+			try {
+				while (true) {
+					try {
+						return task.get();
+					} catch (InterruptedException e) {
+						interrupted = true; // keep waiting, as other threads rely on this element as well
+					} catch (ExecutionException e) {
+						CACHE.remove(key, this); // don't memoize failed discovery, e.g. ServiceConfigurationError due to a broken services file
+						switch (e.getCause()) {
+							case RuntimeException cause -> throw cause;
+							case Error cause -> throw cause;
+							default -> throw new IllegalStateException(e.getCause());
+						}
+					}
+				}
+			} finally {
+				if (interrupted) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,158 @@
+package org.cryptomator.integrations.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A reference-counted lease on a plugin class loader.
+ * <p>
+ * The underlying class loader is closed when the last lease has been {@link #close() closed}.
+ *
+ * @see ClassLoaderFactory#acquireForPluginDir()
+ */
+final class SharedClassLoader implements AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SharedClassLoader.class);
+	private static final Cleaner CLEANER = Cleaner.create();
+
+	private final URLClassLoader classLoader;
+	private final ClassLoaderFactory.Fingerprint fingerprint;
+	private final Map<ClassLoaderFactory.JarStamp, Set<String>> providedServices;
+	private final boolean isolateServices;
+	private final List<ModuleLayer> moduleLayers;
+	private final Map<String, URLClassLoader> serviceClassLoaders = new ConcurrentHashMap<>();
+	private final AtomicInteger refCount = new AtomicInteger(1);
+
+	/**
+	 * @param classLoader      Class loader aware of all plugin jars
+	 * @param fingerprint      Plugin dir fingerprint at creation time
+	 * @param providedServices Names of the services provided by each plugin jar
+	 * @param isolateServices  Whether to create a dedicated class loader per service, only containing the jars providing it
+	 * @param moduleLayers     Module layers of plugins not contained in {@code classLoader}
+	 */
+	SharedClassLoader(URLClassLoader classLoader, ClassLoaderFactory.Fingerprint fingerprint, Map<ClassLoaderFactory.JarStamp, Set<String>> providedServices, boolean isolateServices, List<ModuleLayer> moduleLayers) {
+		this.classLoader = classLoader;
+		this.fingerprint = fingerprint;
+		this.providedServices = providedServices;
+		this.isolateServices = isolateServices;
+		this.moduleLayers = moduleLayers;
+	}
+
+	public URLClassLoader classLoader() {
+		return classLoader;
+	}
+
+	/**
+	 * Returns the class loader to use for looking up providers of the given service.
+	 * <p>
+	 * If no plugin jar declares a provider of the service, the parent class loader is returned, so that the lookup doesn't
+	 * need to search the plugin jars. If services are isolated, a class loader only aware of the {@link PluginLayers#groups(Path, List) plugin groups}
+	 * providing the service is returned, i.e. the jars providing the service along with all other jars in the same subdirectory
+	 * of the plugin dir, such as their dependencies. It is created on first use and closed together with this class loader.
+	 *
+	 * @param service The service to look up
+	 * @return The plugin class loader, a service-specific class loader or the parent class loader
+	 */
+	public ClassLoader classLoaderFor(Class<?> service) {
+		var serviceName = service.getName();
+		var jars = providedServices.entrySet().stream().filter(e -> e.getValue().contains(serviceName)).map(Map.Entry::getKey).toList();
+		if (jars.isEmpty()) {
+			return classLoader.getParent();
+		} else if (!isolateServices) {
+			return classLoader;
+		} else {
+			return serviceClassLoaders.computeIfAbsent(serviceName, k -> {
+				var urls = pluginGroupsOf(jars).stream().map(ClassLoaderFactory.JarStamp::path).sorted().map(ClassLoaderFactory::toUrl).toArray(URL[]::new);
+				LOG.debug("Creating class loader for {} with {} of {} plugin jars.", serviceName, urls.length, providedServices.size());
+				return URLClassLoader.newInstance(urls, classLoader.getParent());
+			});
+		}
+	}
+
+	private List<ClassLoaderFactory.JarStamp> pluginGroupsOf(List<ClassLoaderFactory.JarStamp> jars) {
+		var dir = fingerprint.dir();
+		if (dir == null) {
+			return jars;
+		}
+		return PluginLayers.groups(dir, List.copyOf(providedServices.keySet())).values().stream() //
+				.filter(group -> group.stream().anyMatch(jars::contains)) //
+				.flatMap(List::stream) //
+				.toList();
+	}
+
+	/**
+	 * Creates service loaders for all plugins providing the given service, i.e. one for {@link #classLoaderFor(Class)}
+	 * and one per {@link PluginLayers module layer} containing a provider.
+	 * <p>
+	 * Note that each service loader also finds the providers of the parent class loader or layer, so the results may overlap.
+	 *
+	 * @param service The service to look up
+	 * @param <T>     Type of the service
+	 * @return Service loaders, the first one being based on the class loader
+	 */
+	<T> List<ServiceLoader<T>> serviceLoaders(Class<T> service) {
+		var loaders = new ArrayList<ServiceLoader<T>>();
+		loaders.add(ServiceLoader.load(service, classLoaderFor(service)));
+		moduleLayers.stream().filter(layer -> PluginLayers.provides(layer, service)).map(layer -> ServiceLoader.load(layer, service)).forEach(loaders::add);
+		return loaders;
+	}
+
+	ClassLoaderFactory.Fingerprint fingerprint() {
+		return fingerprint;
+	}
+
+	boolean isClosed() {
+		return refCount.get() <= 0;
+	}
+
+	SharedClassLoader retain() throws IllegalStateException {
+		if (refCount.getAndUpdate(i -> i > 0 ? i + 1 : i) <= 0) {
+			throw new IllegalStateException("Class loader already closed");
+		}
+		return this;
+	}
+
+	/**
+	 * Retains this class loader for as long as the given object is reachable, e.g. a lookup that loads classes lazily.
+	 *
+	 * @param owner An object depending on this class loader
+	 * @throws IllegalStateException If already closed
+	 */
+	void retainWhileReachable(Object owner) throws IllegalStateException {
+		retain();
+		CLEANER.register(owner, this::close);
+	}
+
+	/**
+	 * Releases this lease. Must be called exactly once per acquisition.
+	 */
+	@Override
+	public void close() {
+		if (refCount.decrementAndGet() == 0) {
+			serviceClassLoaders.values().forEach(SharedClassLoader::closeQuietly);
+			closeQuietly(classLoader);
+			LOG.debug("Closed plugin class loader.");
+		}
+	}
+
+	private static void closeQuietly(URLClassLoader classLoader) {
+		try {
+			classLoader.close();
+		} catch (IOException e) {
+			LOG.warn("Failed to close plugin class loader.", e);
+		}
+	}
+}
@@ -19,6 +19,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class DownloadUpdateMechanism implements UpdateMechanism<DownloadUpdateInfo> {
 
@@ -26,6 +28,34 @@ public abstract class DownloadUpdateMechanism implements UpdateMechanism<Downloa
 	private static final String LATEST_VERSION_API_URL = "https://api.cryptomator.org/connect/apps/desktop/latest-version?format=1";
 	private static final ObjectMapper MAPPER = new ObjectMapper();
 
+	/**
+	 * System property specifying the number of concurrent connections used to download the update asset. Defaults to 1.
+	 */
+	public static final String DOWNLOAD_CONNECTIONS_PROPERTY = "cryptomator.update.downloadConnections";
+
+	private final Map<String, Path> workDirs = new ConcurrentHashMap<>(); // by download URL
+	private volatile @Nullable HttpClient httpClient; // set by caller
+
+	/**
+	 * Sets the HTTP client to use for downloading updates.
+	 * <p>
+	 * If no client is set, downloads use {@link DownloadUpdateStep#sharedHttpClient() a shared client}.
+	 * @param httpClient The client to use or null to reset. It must follow redirects and is not closed by this mechanism.
+	 * @see DownloadUpdateStep#newHttpClientBuilder()
+	 */
+	public void setHttpClient(@Nullable HttpClient httpClient) {
+		this.httpClient = httpClient;
+	}
+
+	/**
+	 * Determines the HTTP client to use for downloads.
+	 * @return The client set via {@link #setHttpClient(HttpClient)} or a shared client, if none is set.
+	 */
+	protected HttpClient downloadHttpClient() {
+		var client = httpClient;
+		return client != null ? client : DownloadUpdateStep.sharedHttpClient();
+	}
+
 	@Override
 	public DownloadUpdateInfo checkForUpdate(String currentVersion, HttpClient httpClient) {
 		try {
@@ -49,6 +79,8 @@ public abstract class DownloadUpdateMechanism implements UpdateMechanism<Downloa
 
 	/**
 	 * Returns the first step to prepare the update. This downloads the {@link DownloadUpdateInfo#asset() asset} to a temporary location and verifies its checksum.
+	 * <p>
+	 * The temporary location is reused when invoking this method again for the same asset, so a failed download can be resumed.
 	 * @param updateInfo The {@link DownloadUpdateInfo} retrieved from {@link #checkForUpdate(String, HttpClient)}.
 	 * @return a new {@link UpdateStep} that can be used to monitor the download progress.
 	 * @throws UpdateFailedException When failing to prepare a temporary download location.
@@ -56,7 +88,12 @@ public abstract class DownloadUpdateMechanism implements UpdateMechanism<Downloa
 	@Override
 	public UpdateStep firstStep(DownloadUpdateInfo updateInfo) throws UpdateFailedException {
 		try {
-			Path workDir = Files.createTempDirectory("cryptomator-update");
+			var url = updateInfo.asset().downloadUrl();
+			var workDir = workDirs.get(url);
+			if (workDir == null || !Files.isDirectory(workDir)) {
+				workDir = Files.createTempDirectory("cryptomator-update");
+				workDirs.put(url, workDir);
+			}
 			return new FirstStep(workDir, updateInfo);
 		} catch (IOException e) {
 			throw new UpdateFailedException("Failed to create temporary directory for update", e);
@@ -111,7 +148,7 @@ public abstract class DownloadUpdateMechanism implements UpdateMechanism<Downloa
 					? HexFormat.of().withLowerCase().parseHex(updateInfo.asset().digest.substring(7)) // remove "sha256:" prefix
 					: null;
 			var size = updateInfo.asset().size;
-			super(uri, destination, digest, size);
+			super(uri, destination, digest, size, Integer.getInteger(DOWNLOAD_CONNECTIONS_PROPERTY, 1), downloadHttpClient());
 			this.workDir = workDir;
 			this.updateInfo = updateInfo;
 		}
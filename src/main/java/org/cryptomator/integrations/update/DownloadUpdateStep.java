@@ -3,15 +3,14 @@ package org.cryptomator.integrations.update;
 import org.cryptomator.integrations.Localization;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.FilterInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.net.URI;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.nio.channels.Channels;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -19,16 +18,31 @@ import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
 
 public abstract class DownloadUpdateStep implements UpdateStep {
 
+	private static final int MAX_ATTEMPTS = 3;
+	private static final String STATE_SUFFIX = ".download";
+	private static final String VALIDATOR_KEY = "validator";
+	private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+|\\*)");
+
 	protected final URI source;
 	protected final Path destination;
 	private final byte[] checksum;
+	private final int connections;
+	private final @Nullable HttpClient httpClient;
 	private final AtomicLong totalBytes;
 	private final LongAdder loadedBytes = new LongAdder();
 	private final Thread downloadThread;
@@ -43,9 +57,44 @@ public abstract class DownloadUpdateStep implements UpdateStep {
 	 * @param estDownloadSize The estimated size of the download in bytes.
 	 */
 	protected DownloadUpdateStep(URI source, Path destination, @Nullable byte[] checksum, long estDownloadSize) {
+		this(source, destination, checksum, estDownloadSize, 1);
+	}
+
+	/**
+	 * Creates a new DownloadUpdateProcess instance, optionally downloading segments of the file concurrently.
+	 * <p>
+	 * If more than one connection is requested, the file is split into as many byte ranges, which are requested concurrently
+	 * and written to their respective position of the destination file. This requires the server to support range requests,
+	 * otherwise the file is downloaded using a single connection.
+	 * @param source The URI from which the update will be downloaded.
+	 * @param destination The path where to save the downloaded file.
+	 * @param checksum (optional) The expected SHA-256 checksum of the downloaded file, can be null if not required.
+	 * @param estDownloadSize The estimated size of the download in bytes.
+	 * @param connections The maximum number of concurrent connections to use.
+	 */
+	protected DownloadUpdateStep(URI source, Path destination, @Nullable byte[] checksum, long estDownloadSize, int connections) {
+		this(source, destination, checksum, estDownloadSize, connections, null);
+	}
+
+	/**
+	 * Creates a new DownloadUpdateProcess instance using the given HTTP client.
+	 * <p>
+	 * Reusing a client allows the download to reuse connections and TLS sessions established by previous requests, e.g.
+	 * during the update check. The client must follow redirects and is not closed by this step.
+	 * @param source The URI from which the update will be downloaded.
+	 * @param destination The path where to save the downloaded file.
+	 * @param checksum (optional) The expected SHA-256 checksum of the downloaded file, can be null if not required.
+	 * @param estDownloadSize The estimated size of the download in bytes.
+	 * @param connections The maximum number of concurrent connections to use.
+	 * @param httpClient (optional) The HTTP client to use, or null to use a {@link #sharedHttpClient() shared client}.
+	 * @see #newHttpClientBuilder()
+	 */
+	protected DownloadUpdateStep(URI source, Path destination, @Nullable byte[] checksum, long estDownloadSize, int connections, @Nullable HttpClient httpClient) {
 		this.source = source;
 		this.destination = destination;
 		this.checksum = checksum;
+		this.connections = Math.max(1, connections);
+		this.httpClient = httpClient;
 		this.totalBytes = new AtomicLong(estDownloadSize);
 		this.downloadThread = Thread.ofVirtual().unstarted(this::download);
 	}
@@ -96,15 +145,38 @@ public abstract class DownloadUpdateStep implements UpdateStep {
 		downloadThread.interrupt();
 		try {
 			Files.deleteIfExists(destination);
+			Files.deleteIfExists(stateFile());
 		} catch (IOException e) {
 			// ignore, this is a best-effort cleanup
 		}
 	}
 
+	/**
+	 * Creates a builder for HTTP clients suitable for downloading updates, i.e. following redirects and using a connect timeout.
+	 * <p>
+	 * Callers may further customize the builder, e.g. by setting an {@link HttpClient.Builder#executor(java.util.concurrent.Executor) executor}
+	 * or {@link HttpClient.Builder#version(HttpClient.Version) HTTP version}, before passing the client to this step or to
+	 * {@link DownloadUpdateMechanism#setHttpClient(HttpClient)}.
+	 * @return a new, preconfigured builder
+	 */
+	public static HttpClient.Builder newHttpClientBuilder() {
+		return HttpClient.newBuilder().followRedirects(HttpClient.Redirect.ALWAYS).connectTimeout(Duration.ofSeconds(10));
+	}
+
+	/**
+	 * Returns the HTTP client shared by all downloads that don't use a caller-supplied client.
+	 * <p>
+	 * The client is created on first use with the defaults of {@link #newHttpClientBuilder()}, dispatching to virtual threads.
+	 * @return the shared HTTP client
+	 */
+	public static HttpClient sharedHttpClient() {
+		return SharedHttpClient.INSTANCE;
+	}
+
 	protected void download() {
 		var request = HttpRequest.newBuilder().uri(source).GET().build();
-		try (HttpClient client = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.ALWAYS).connectTimeout(Duration.ofSeconds(10)).build()) {
-			downloadInternal(client, request);
+		try {
+			downloadInternal(httpClient != null ? httpClient : sharedHttpClient(), request);
 		} catch (IOException e) {
 			downloadException = e;
 		} finally {
@@ -114,80 +186,342 @@ public abstract class DownloadUpdateStep implements UpdateStep {
 
 	/**
 	 * Downloads the update from the given URI and saves it to the specified filename in the working directory.
+	 * <p>
+	 * If the download fails, the partially downloaded file is kept along with the server's {@code ETag} (or {@code Last-Modified}
+	 * date), so that further attempts can resume the download by only requesting the missing bytes, as long as the file on the
+	 * server didn't change. Failed attempts are retried up to three times.
 	 * @param client  the HttpClient to use for the download
 	 * @param request the HttpRequest which downloads the file
 	 * @throws IOException indicating I/O errors during the download or file writing process or due to checksum mismatch
 	 */
 	protected void downloadInternal(HttpClient client, HttpRequest request) throws IOException {
-		try {
-			// make download request
-			var response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
-			if (response.statusCode() != 200) {
-				throw new IOException("Failed to download update, status code: " + response.statusCode());
+		if (connections > 1 && totalBytes.get() > 0 && readValidator() == null) {
+			try {
+				if (downloadSegmented(client, request)) {
+					return;
+				}
+			} catch (InterruptedIOException | ChecksumMismatchException e) {
+				throw e;
+			} catch (IOException e) {
+				// fall back to a single connection
 			}
+		}
+		for (int attempt = 1; ; attempt++) {
+			try {
+				downloadAttempt(client, request);
+				Files.deleteIfExists(stateFile());
+				return;
+			} catch (InterruptedIOException | ChecksumMismatchException e) {
+				throw e;
+			} catch (IOException e) {
+				if (attempt >= MAX_ATTEMPTS) {
+					throw e;
+				}
+			}
+		}
+	}
 
-			// update totalBytes
+	private void downloadAttempt(HttpClient client, HttpRequest request) throws IOException {
+		// resume previous download, if possible
+		var validator = readValidator();
+		long offset = validator != null && Files.isRegularFile(destination) ? Files.size(destination) : 0L;
+		var requestBuilder = HttpRequest.newBuilder(request, (name, value) -> true);
+		if (offset > 0) {
+			requestBuilder.header("Range", "bytes=" + offset + "-").header("If-Range", validator);
+		}
+
+		// make download request
+		var response = send(client, requestBuilder.build());
+		if (response.statusCode() == 200) {
+			offset = 0L; // server sent the whole file, e.g. because it changed since the previous attempt
+			writeValidator(validatorOf(response.headers()));
 			response.headers().firstValueAsLong("Content-Length").ifPresent(totalBytes::set);
+		} else if (response.statusCode() == 206 && offset > 0) {
+			var contentRange = ContentRange.parse(response.headers().firstValue("Content-Range").orElse(""));
+			if (contentRange == null || contentRange.start() != offset) {
+				discard(response);
+				throw new IOException("Unexpected Content-Range: " + response.headers().firstValue("Content-Range").orElse(null));
+			}
+			if (contentRange.length() > 0) {
+				totalBytes.set(contentRange.length());
+			}
+		} else {
+			discard(response);
+			if (response.statusCode() == 416) {
+				discardPartialDownload(); // start over during next attempt
+			}
+			throw new IOException("Failed to download update, status code: " + response.statusCode());
+		}
+
+		// prepare checksum calculation, including previously downloaded bytes
+		var sha256 = sha256();
+		if (offset > 0) {
+			digestFile(sha256, offset);
+		}
+		loadedBytes.reset();
+		loadedBytes.add(offset);
+
+		// write received buffers to file, updating the checksum on the fly
+		try (var dst = FileChannel.open(destination, StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
+			dst.truncate(offset);
+			writeBody(response, dst, offset, -1L, sha256);
+		}
 
-			// prepare checksum calculation
-			MessageDigest sha256;
+		// verify checksum if provided
+		byte[] calculatedChecksum = sha256.digest();
+		if (checksum != null && !MessageDigest.isEqual(calculatedChecksum, checksum)) {
+			discardPartialDownload();
+			throw new ChecksumMismatchException("Checksum verification failed for downloaded file: " + destination);
+		}
+	}
+
+	/**
+	 * Downloads the file in up to {@link #connections} byte ranges concurrently, each on its own virtual thread.
+	 * <p>
+	 * The request of the first range also serves as probe whether the server supports range requests and tells the exact size
+	 * of the file. The destination file is preallocated to this size, so each range can be written to its position as it arrives.
+	 * Further ranges are requested conditionally on the validator of the first response and must report the same size, so
+	 * ranges of a file changed on the server meanwhile are rejected. The checksum is verified after all ranges have been written.
+	 * @return {@code false} if the server doesn't support range requests
+	 */
+	private boolean downloadSegmented(HttpClient client, HttpRequest request) throws IOException {
+		var firstResponse = sendRange(client, request, 0, Math.ceilDiv(totalBytes.get(), connections) - 1, null);
+		var firstRange = ContentRange.parse(firstResponse.headers().firstValue("Content-Range").orElse(""));
+		if (firstResponse.statusCode() != 206 || firstRange == null || firstRange.start() != 0 || firstRange.length() <= 0) {
+			discard(firstResponse);
+			return false;
+		}
+		long size = firstRange.length();
+		var validator = validatorOf(firstResponse.headers());
+		totalBytes.set(size);
+		loadedBytes.reset();
+
+		try (var dst = FileChannel.open(destination, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			dst.write(ByteBuffer.allocate(1), size - 1); // preallocate
+			var executor = Executors.newVirtualThreadPerTaskExecutor();
 			try {
-				sha256 = MessageDigest.getInstance("SHA-256");
-			} catch (NoSuchAlgorithmException e) {
-				throw new AssertionError("Every implementation of the Java platform is required to support [...] SHA-256", e);
+				var segments = new ArrayList<Future<?>>();
+				segments.add(executor.submit(() -> writeRange(firstResponse, dst, 0, firstRange.end(), size)));
+				long remaining = size - firstRange.end() - 1;
+				long segmentSize = Math.max(1, Math.ceilDiv(remaining, connections - 1));
+				for (long start = firstRange.end() + 1; start < size; start += segmentSize) {
+					long from = start;
+					long to = Math.min(start + segmentSize, size) - 1;
+					segments.add(executor.submit(() -> writeRange(sendRange(client, request, from, to, validator), dst, from, to, size)));
+				}
+				for (var segment : segments) {
+					segment.get();
+				}
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException ioe) {
+					throw ioe;
+				}
+				throw new IOException("Failed to download segment", e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Download interrupted");
+			} finally {
+				executor.shutdownNow(); // cancels remaining segments, if any failed
 			}
+		}
 
-			// write bytes to file
-			try (var in = new DownloadInputStream(response.body(), loadedBytes, sha256);
-				 var src = Channels.newChannel(in);
-				 var dst = FileChannel.open(destination, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW)) {
-				dst.transferFrom(src, 0, Long.MAX_VALUE);
+		// verify checksum of the assembled file
+		if (checksum != null) {
+			var sha256 = sha256();
+			digestFile(sha256, size);
+			if (!MessageDigest.isEqual(sha256.digest(), checksum)) {
+				discardPartialDownload();
+				throw new ChecksumMismatchException("Checksum verification failed for downloaded file: " + destination);
 			}
+		}
+		return true;
+	}
 
-			// verify checksum if provided
-			byte[] calculatedChecksum = sha256.digest();
-			if (checksum != null && !MessageDigest.isEqual(calculatedChecksum, checksum)) {
-				throw new IOException("Checksum verification failed for downloaded file: " + destination);
+	/**
+	 * Requests the given byte range.
+	 * @param validator (optional) The {@code If-Range} validator, causing the server to respond with the whole file if it changed
+	 */
+	private HttpResponse<Flow.Publisher<List<ByteBuffer>>> sendRange(HttpClient client, HttpRequest request, long from, long to, @Nullable String validator) throws IOException {
+		var requestBuilder = HttpRequest.newBuilder(request, (name, value) -> true).header("Range", "bytes=" + from + "-" + to);
+		if (validator != null) {
+			requestBuilder.header("If-Range", validator);
+		}
+		return send(client, requestBuilder.build());
+	}
+
+	/**
+	 * Sends the given request, returning as soon as the response headers are received. The body must be consumed using
+	 * {@link #writeBody(HttpResponse, FileChannel, long, long, MessageDigest)} or {@link #discard(HttpResponse)}.
+	 */
+	private HttpResponse<Flow.Publisher<List<ByteBuffer>>> send(HttpClient client, HttpRequest request) throws IOException {
+		try {
+			return client.send(request, HttpResponse.BodyHandlers.ofPublisher());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Download interrupted");
+		}
+	}
+
+	/**
+	 * Writes the body of a range response to the given position of the destination file.
+	 * @param size The expected size of the whole file
+	 */
+	private Void writeRange(HttpResponse<Flow.Publisher<List<ByteBuffer>>> response, FileChannel dst, long from, long to, long size) throws IOException {
+		var contentRange = ContentRange.parse(response.headers().firstValue("Content-Range").orElse(""));
+		if (response.statusCode() != 206 || contentRange == null || contentRange.start() != from || contentRange.length() != size) {
+			discard(response);
+			throw new IOException("Unexpected response to range request, status code: " + response.statusCode());
+		}
+		long written = writeBody(response, dst, from, to + 1, null);
+		if (written != to + 1 - from) {
+			throw new IOException("Incomplete range " + from + "-" + to + ", received " + written + " bytes.");
+		}
+		return null;
+	}
+
+	/**
+	 * Writes the received buffers of the given response to the destination file, starting at the given position.
+	 * @param limit The position after which the server must not send any more bytes, or -1 if unlimited
+	 * @param digest (optional) A digest to update with the received bytes
+	 * @return The number of bytes written
+	 */
+	private long writeBody(HttpResponse<Flow.Publisher<List<ByteBuffer>>> response, FileChannel dst, long position, long limit, @Nullable MessageDigest digest) throws IOException {
+		var subscriber = new FileChannelBodySubscriber(dst, position, limit, digest, loadedBytes);
+		response.body().subscribe(subscriber);
+		try {
+			return subscriber.getBody().toCompletableFuture().get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException ioe) {
+				throw ioe;
 			}
+			throw new IOException("Failed to receive response body", e.getCause());
 		} catch (InterruptedException e) {
+			subscriber.cancel();
+			Thread.currentThread().interrupt();
 			throw new InterruptedIOException("Download interrupted");
 		}
 	}
 
 	/**
-	 * An InputStream decorator that counts the number of bytes read and updates a MessageDigest for checksum calculation.
+	 * Discards the body of an unexpected response without reading it.
 	 */
-	private static class DownloadInputStream extends FilterInputStream {
+	private static void discard(HttpResponse<Flow.Publisher<List<ByteBuffer>>> response) {
+		response.body().subscribe(new Flow.Subscriber<>() {
+			@Override
+			public void onSubscribe(Flow.Subscription subscription) {
+				subscription.cancel();
+			}
 
-		private final LongAdder counter;
-		private final MessageDigest digest;
+			@Override
+			public void onNext(List<ByteBuffer> item) {
+			}
 
-		protected DownloadInputStream(InputStream in, LongAdder counter, MessageDigest digest) {
-			super(in);
-			this.counter = counter;
-			this.digest = digest;
+			@Override
+			public void onError(Throwable throwable) {
+			}
+
+			@Override
+			public void onComplete() {
+			}
+		});
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new AssertionError("Every implementation of the Java platform is required to support [...] SHA-256", e);
 		}
+	}
 
-		@Override
-		public int read(byte[] b, int off, int len) throws IOException {
-			int n = super.read(b, off, len);
-			if (n != -1) {
-				digest.update(b, off, n);
-				counter.add(n);
+	/**
+	 * Feeds the first {@code length} bytes of the (partially) downloaded file into the given digest.
+	 */
+	private void digestFile(MessageDigest digest, long length) throws IOException {
+		try (var in = Files.newInputStream(destination)) {
+			var buffer = new byte[64 * 1024];
+			long remaining = length;
+			while (remaining > 0) {
+				int n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+				if (n == -1) {
+					throw new IOException("Partial download shorter than expected: " + destination);
+				}
+				digest.update(buffer, 0, n);
+				remaining -= n;
 			}
-			return n;
 		}
+	}
+
+	private void discardPartialDownload() throws IOException {
+		Files.deleteIfExists(destination);
+		Files.deleteIfExists(stateFile());
+	}
+
+	private Path stateFile() {
+		return destination.resolveSibling(destination.getFileName() + STATE_SUFFIX);
+	}
+
+	private @Nullable String readValidator() {
+		var props = new Properties();
+		try (var in = Files.newInputStream(stateFile())) {
+			props.load(in);
+			return props.getProperty(VALIDATOR_KEY);
+		} catch (IOException | IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	private void writeValidator(@Nullable String validator) throws IOException {
+		if (validator == null) {
+			Files.deleteIfExists(stateFile()); // not resumable
+			return;
+		}
+		var props = new Properties();
+		props.setProperty(VALIDATOR_KEY, validator);
+		try (var out = Files.newOutputStream(stateFile())) {
+			props.store(out, null);
+		}
+	}
+
+	/**
+	 * Determines the value to use in an {@code If-Range} header, i.e. a strong {@code ETag} or the {@code Last-Modified} date.
+	 */
+	private static @Nullable String validatorOf(HttpHeaders headers) {
+		var etag = headers.firstValue("ETag");
+		if (etag.isPresent() && !etag.get().startsWith("W/")) {
+			return etag.get(); // weak ETags must not be used in If-Range
+		}
+		return headers.firstValue("Last-Modified").orElse(null);
+	}
 
-		@Override
-		public int read() throws IOException {
-			int b = super.read();
-			if (b != -1) {
-				digest.update((byte) b);
-				counter.increment();
+	/**
+	 * A parsed {@code Content-Range: bytes start-end/length} header, where {@code length} is -1 if unknown.
+	 */
+	private record ContentRange(long start, long end, long length) {
+
+		static @Nullable ContentRange parse(String header) {
+			var matcher = CONTENT_RANGE.matcher(header.trim());
+			if (!matcher.matches()) {
+				return null;
 			}
-			return b;
+			var length = matcher.group(3).equals("*") ? -1L : Long.parseLong(matcher.group(3));
+			return new ContentRange(Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2)), length);
 		}
+	}
+
+	/**
+	 * Thrown if the downloaded file doesn't match the expected checksum. Not worth retrying.
+	 */
+	private static class ChecksumMismatchException extends IOException {
+
+		ChecksumMismatchException(String message) {
+			super(message);
+		}
+	}
+
+	private static class SharedHttpClient {
 
+		private static final HttpClient INSTANCE = newHttpClientBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
 	}
 
 }
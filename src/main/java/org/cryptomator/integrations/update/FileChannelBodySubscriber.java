@@ -0,0 +1,114 @@
+package org.cryptomator.integrations.update;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A body subscriber that writes the received buffers directly to a given position of a file channel.
+ * <p>
+ * The same buffers are fed into an optional {@link MessageDigest}, so neither the file nor the digest require intermediate
+ * copies or stream adapters. Uses positional writes only, hence multiple subscribers may write to distinct regions of the
+ * same channel concurrently.
+ * <p>
+ * The body is the number of bytes written.
+ */
+final class FileChannelBodySubscriber implements HttpResponse.BodySubscriber<Long> {
+
+	private final FileChannel channel;
+	private final long start;
+	private final long limit;
+	private final @Nullable MessageDigest digest;
+	private final LongAdder counter;
+	private final CompletableFuture<Long> result = new CompletableFuture<>();
+	private volatile Flow.Subscription subscription;
+	private long position;
+
+	/**
+	 * @param channel The channel to write to
+	 * @param start   The position of the first byte
+	 * @param limit   The position after which no bytes must be written, or -1 if unlimited
+	 * @param digest  (optional) A digest to update with each written byte
+	 * @param counter A counter to add the number of written bytes to
+	 */
+	FileChannelBodySubscriber(FileChannel channel, long start, long limit, @Nullable MessageDigest digest, LongAdder counter) {
+		this.channel = channel;
+		this.start = start;
+		this.limit = limit;
+		this.digest = digest;
+		this.counter = counter;
+		this.position = start;
+	}
+
+	@Override
+	public CompletionStage<Long> getBody() {
+		return result;
+	}
+
+	@Override
+	public void onSubscribe(Flow.Subscription subscription) {
+		if (this.subscription != null || result.isDone()) {
+			subscription.cancel();
+			return;
+		}
+		this.subscription = subscription;
+		subscription.request(1);
+	}
+
+	@Override
+	public void onNext(List<ByteBuffer> buffers) {
+		if (result.isDone()) {
+			return; // cancelled
+		}
+		try {
+			for (var buffer : buffers) {
+				int n = buffer.remaining();
+				if (limit >= 0 && position + n > limit) {
+					throw new IOException("Received more bytes than requested.");
+				}
+				if (digest != null) {
+					digest.update(buffer.duplicate());
+				}
+				while (buffer.hasRemaining()) {
+					position += channel.write(buffer, position);
+				}
+				counter.add(n);
+			}
+			subscription.request(1);
+		} catch (IOException e) {
+			subscription.cancel();
+			result.completeExceptionally(e);
+		}
+	}
+
+	@Override
+	public void onError(Throwable throwable) {
+		result.completeExceptionally(throwable);
+	}
+
+	@Override
+	public void onComplete() {
+		result.complete(position - start);
+	}
+
+	/**
+	 * Stops receiving further buffers, completing the body exceptionally.
+	 */
+	void cancel() {
+		var s = subscription;
+		if (s != null) {
+			s.cancel();
+		}
+		result.completeExceptionally(new IOException("Download cancelled"));
+	}
+
+}
@@ -21,6 +21,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.never;
@@ -83,6 +85,113 @@ public class ClassLoaderFactoryTest {
 		}
 	}
 
+	@Nested
+	@DisplayName("shared class loader")
+	public class SharedPluginClassLoader {
+
+		private Path pluginDir;
+
+		@BeforeEach
+		public void setup(@TempDir Path tmpDir) throws IOException {
+			try (var out = Files.newOutputStream(tmpDir.resolve("foo.jar"));
+				 var jar = JarBuilder.withTarget(out)) {
+				jar.addFile("foo.properties", new ByteArrayInputStream("foo = 42".getBytes()));
+			}
+			this.pluginDir = tmpDir;
+			System.setProperty("cryptomator.pluginDir", pluginDir.toString());
+		}
+
+		@AfterEach
+		public void tearDown() {
+			System.clearProperty("cryptomator.pluginDir");
+		}
+
+		@Test
+		@DisplayName("is reused while plugin dir is unchanged")
+		public void testReuse() {
+			try (var lease1 = ClassLoaderFactory.acquireForPluginDir();
+				 var lease2 = ClassLoaderFactory.acquireForPluginDir()) {
+				Assertions.assertSame(lease1.classLoader(), lease2.classLoader());
+				Assertions.assertSame(lease1.classLoader().getParent(), ClassLoaderFactory.sharedForPluginDir(Runnable.class));
+			}
+		}
+
+		@Test
+		@DisplayName("is only used for services provided by a plugin jar")
+		public void testClassLoaderFor() throws IOException {
+			try (var out = Files.newOutputStream(pluginDir.resolve("bar.jar"));
+				 var jar = JarBuilder.withTarget(out)) {
+				jar.addFile("META-INF/services/java.lang.Runnable", new ByteArrayInputStream("com.example.Bar".getBytes()));
+			}
+
+			try (var lease = ClassLoaderFactory.acquireForPluginDir()) {
+				Assertions.assertSame(lease.classLoader(), lease.classLoaderFor(Runnable.class));
+				Assertions.assertSame(lease.classLoader().getParent(), lease.classLoaderFor(AutoCloseable.class));
+			}
+		}
+
+		@Test
+		@DisplayName("uses dedicated class loaders per service if isolated")
+		public void testIsolateServices() throws IOException {
+			System.setProperty(ClassLoaderFactory.ISOLATE_SERVICES_KEY, "true");
+			try (var out = Files.newOutputStream(pluginDir.resolve("bar.jar"));
+				 var jar = JarBuilder.withTarget(out)) {
+				jar.addFile("META-INF/services/java.lang.Runnable", new ByteArrayInputStream("com.example.Bar".getBytes()));
+				jar.addFile("bar.properties", new ByteArrayInputStream("bar = 23".getBytes()));
+			}
+
+			try (var lease = ClassLoaderFactory.acquireForPluginDir()) {
+				var isolated = lease.classLoaderFor(Runnable.class);
+				Assertions.assertNotSame(lease.classLoader(), isolated);
+				Assertions.assertSame(isolated, lease.classLoaderFor(Runnable.class));
+				Assertions.assertNotNull(isolated.getResource("bar.properties"));
+				Assertions.assertNull(isolated.getResource("foo.properties"));
+			} finally {
+				System.clearProperty(ClassLoaderFactory.ISOLATE_SERVICES_KEY);
+			}
+		}
+
+		@Test
+		@DisplayName("isolated class loaders contain all jars of the plugins providing the service")
+		public void testIsolateServicesWithDependencies(@TempDir Path buildDir) throws ReflectiveOperationException, IOException {
+			System.setProperty(ClassLoaderFactory.ISOLATE_SERVICES_KEY, "true");
+			var classesDir = TestPlugins.compile(buildDir, Map.of( //
+					"com.example.Bar", "package com.example; public class Bar implements Runnable { public void run() { new com.example.lib.Helper(); } }", //
+					"com.example.lib.Helper", "package com.example.lib; public class Helper {}"));
+			TestPlugins.buildJar(pluginDir.resolve("bar/bar.jar"), classesDir, List.of("com.example.Bar"), Map.of("java.lang.Runnable", "com.example.Bar"));
+			TestPlugins.buildJar(pluginDir.resolve("bar/lib.jar"), classesDir, List.of("com.example.lib.Helper"), Map.of());
+
+			try (var lease = ClassLoaderFactory.acquireForPluginDir()) {
+				var isolated = lease.classLoaderFor(Runnable.class);
+				var bar = (Runnable) Class.forName("com.example.Bar", true, isolated).getConstructor().newInstance();
+				Assertions.assertDoesNotThrow(bar::run);
+				Assertions.assertNull(isolated.getResource("foo.properties"));
+			} finally {
+				System.clearProperty(ClassLoaderFactory.ISOLATE_SERVICES_KEY);
+			}
+		}
+
+		@Test
+		@DisplayName("is replaced and closed after plugin dir changed")
+		public void testReplace() throws IOException {
+			var lease1 = ClassLoaderFactory.acquireForPluginDir();
+			try (var out = Files.newOutputStream(pluginDir.resolve("bar.jar"));
+				 var jar = JarBuilder.withTarget(out)) {
+				jar.addFile("bar.properties", new ByteArrayInputStream("bar = 23".getBytes()));
+			}
+
+			try (var lease2 = ClassLoaderFactory.acquireForPluginDir()) {
+				Assertions.assertNotSame(lease1.classLoader(), lease2.classLoader());
+				Assertions.assertNotNull(lease2.classLoader().getResource("bar.properties"));
+				Assertions.assertFalse(lease1.isClosed());
+				lease1.close();
+				Assertions.assertTrue(lease1.isClosed());
+				Assertions.assertFalse(lease2.isClosed());
+			}
+		}
+
+	}
+
 	@Test
 	@DisplayName("read path from cryptomator.pluginDir")
 	public void testReadPluginDirFromSysProp() {
@@ -1,12 +1,44 @@
 package org.cryptomator.integrations.common;
 
+import org.cryptomator.integrations.mount.MountService;
+import org.cryptomator.integrations.revealpath.RevealPathService;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.ServiceLoader;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 public class IntegrationsLoaderTest {
 
+	@SuppressWarnings("unchecked")
+	private static <S> ServiceLoader.Provider<S> provider(S impl) {
+		ServiceLoader.Provider<S> provider = Mockito.mock(ServiceLoader.Provider.class);
+		Mockito.doReturn(impl.getClass()).when(provider).type();
+		Mockito.doReturn(impl).when(provider).get();
+		return provider;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <S> ServiceLoader<S> serviceLoader(Class<S> service, List<? extends ServiceLoader.Provider<? extends S>> providers) {
+		ServiceLoader<S> loader = Mockito.mock(ServiceLoader.class);
+		Mockito.when(loader.stream()).thenAnswer(invocation -> providers.stream());
+		return loader;
+	}
+
 	@Nested
 	@DisplayName("@CheckAvailability on static methods")
 	public class StaticAvailabilityChecks {
@@ -110,6 +142,51 @@ public class IntegrationsLoaderTest {
 			Assertions.assertFalse(IntegrationsLoader.passesStaticAvailabilityCheck(InitExceptionTestClass.class)); //NoClassDefFoundError due to repated call
 		}
 
+		@Test
+		@DisplayName("@CheckAvailability methods throwing a LinkageError are treated as false")
+		public void testPassesAvailabilityCheckUnsatisfiedLink() {
+			@CheckAvailability class C1 {
+				@CheckAvailability public static boolean test() { throw new UnsatisfiedLinkError("no native lib"); }
+			}
+
+			Assertions.assertFalse(IntegrationsLoader.passesStaticAvailabilityCheck(C1.class));
+		}
+
+		@CheckAvailability
+		private static class StaticCached {
+			static final AtomicInteger INVOCATIONS = new AtomicInteger();
+
+			@CheckAvailability(cacheSeconds = 60)
+			public static boolean test() {
+				INVOCATIONS.incrementAndGet();
+				return true;
+			}
+		}
+
+		@Test
+		@DisplayName("results of @CheckAvailability(cacheSeconds) methods are reused until invalidated")
+		public void testCachedAvailabilityCheck() {
+			var before = StaticCached.INVOCATIONS.get();
+
+			Assertions.assertTrue(IntegrationsLoader.passesStaticAvailabilityCheck(StaticCached.class));
+			Assertions.assertTrue(IntegrationsLoader.passesStaticAvailabilityCheck(StaticCached.class));
+			Assertions.assertEquals(before + 1, StaticCached.INVOCATIONS.get());
+
+			IntegrationsLoader.invalidateAvailabilityCache();
+			Assertions.assertTrue(IntegrationsLoader.passesStaticAvailabilityCheck(StaticCached.class));
+			Assertions.assertEquals(before + 2, StaticCached.INVOCATIONS.get());
+		}
+
+		@Test
+		@DisplayName("@CheckAvailability methods are resolved once per class")
+		public void testAvailabilityChecksAreCached() {
+			var checks = AvailabilityChecks.of(StaticTrue.class);
+
+			Assertions.assertSame(checks, AvailabilityChecks.of(StaticTrue.class));
+			Assertions.assertEquals(1, checks.get(true).length);
+			Assertions.assertEquals(0, checks.get(false).length);
+		}
+
 	}
 
 	@Nested
@@ -224,4 +301,435 @@ public class IntegrationsLoaderTest {
 
 	}
 
-}
\ No newline at end of file
+	@Nested
+	@DisplayName("@OperatingSystem")
+	public class OperatingSystems {
+
+		@Test
+		@DisplayName("no @OperatingSystem will always pass")
+		public void testUnrestricted() {
+			class C1 {}
+
+			Assertions.assertTrue(IntegrationsLoader.isSupportedOperatingSystem(C1.class));
+		}
+
+		@Test
+		@DisplayName("@OperatingSystem matching the current os and any architecture")
+		public void testAnyArchitecture() {
+			@OperatingSystem(OperatingSystem.Value.UNKNOWN) class C1 {}
+
+			Assertions.assertEquals(OperatingSystem.Value.current() == OperatingSystem.Value.UNKNOWN, IntegrationsLoader.isSupportedOperatingSystem(C1.class));
+		}
+
+		@Test
+		@DisplayName("@OperatingSystem with architecture restriction")
+		public void testArchitecture() {
+			@OperatingSystem(value = OperatingSystem.Value.LINUX, architecture = OperatingSystem.Architecture.X64)
+			@OperatingSystem(value = OperatingSystem.Value.MAC, architecture = OperatingSystem.Architecture.X64)
+			@OperatingSystem(value = OperatingSystem.Value.WINDOWS, architecture = OperatingSystem.Architecture.X64)
+			@OperatingSystem(value = OperatingSystem.Value.UNKNOWN, architecture = OperatingSystem.Architecture.X64)
+			class C1 {}
+			@OperatingSystem(value = OperatingSystem.Value.LINUX, architecture = OperatingSystem.Architecture.AARCH64)
+			@OperatingSystem(value = OperatingSystem.Value.MAC, architecture = OperatingSystem.Architecture.AARCH64)
+			@OperatingSystem(value = OperatingSystem.Value.WINDOWS, architecture = OperatingSystem.Architecture.AARCH64)
+			@OperatingSystem(value = OperatingSystem.Value.UNKNOWN, architecture = OperatingSystem.Architecture.AARCH64)
+			class C2 {}
+
+			var arch = OperatingSystem.Architecture.current();
+			Assertions.assertEquals(arch == OperatingSystem.Architecture.X64, IntegrationsLoader.isSupportedOperatingSystem(C1.class));
+			Assertions.assertEquals(arch == OperatingSystem.Architecture.AARCH64, IntegrationsLoader.isSupportedOperatingSystem(C2.class));
+		}
+
+	}
+
+	@Nested
+	@DisplayName("concurrent availability checks")
+	public class ConcurrentAvailabilityChecks {
+
+		public interface Service {}
+
+		@Priority(10)
+		@CheckAvailability
+		public static class Slow implements Service {
+			@CheckAvailability
+			public static boolean test() throws InterruptedException {
+				Thread.sleep(10_000);
+				return true;
+			}
+		}
+
+		@Priority(5)
+		@CheckAvailability
+		public static class Fast implements Service {
+			@CheckAvailability
+			public static boolean test() {
+				return true;
+			}
+		}
+
+		@Priority(1)
+		public static class Unchecked implements Service {}
+
+		@CheckAvailability
+		public static class Unavailable implements Service {
+			@CheckAvailability
+			public boolean test() {
+				return false;
+			}
+		}
+
+		@Test
+		@DisplayName("providers are returned in priority order")
+		public void testPriorityOrder() {
+			var fast = new Fast();
+			var unchecked = new Unchecked();
+			var loader = serviceLoader(Service.class, List.of(provider(new Unavailable()), provider(unchecked), provider(fast)));
+
+			var result = IntegrationsLoader.loadAllConcurrently(loader, Service.class, Duration.ofSeconds(5)).toList();
+
+			Assertions.assertEquals(List.of(fast, unchecked), result);
+		}
+
+		@Test
+		@DisplayName("providers exceeding the timeout are skipped")
+		public void testTimeout() {
+			var fast = new Fast();
+			var loader = serviceLoader(Service.class, List.of(provider(new Slow()), provider(fast)));
+
+			var result = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(5), () -> IntegrationsLoader.loadAllConcurrently(loader, Service.class, Duration.ofSeconds(1)).toList());
+
+			Assertions.assertEquals(List.of(fast), result);
+		}
+
+		@Test
+		@DisplayName("providers exceeding the configured time budget are reported as timed out")
+		public void testProviderTimeout() {
+			var fast = new Fast();
+			var hangingProvider = provider(new Unchecked());
+			Mockito.doAnswer(invocation -> {
+				Thread.sleep(10_000);
+				return new Unchecked();
+			}).when(hangingProvider).get();
+			var loader = serviceLoader(Service.class, List.of(hangingProvider, provider(fast)));
+			var evaluations = new CopyOnWriteArrayList<ProviderEvaluation>();
+			DiscoveryListener listener = evaluations::add;
+			IntegrationsLoader.addDiscoveryListener(listener);
+			System.setProperty(IntegrationsLoader.PROVIDER_TIMEOUT_KEY, "500");
+			try {
+				var result = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(5), () -> IntegrationsLoader.loadAll(loader, Service.class).toList());
+
+				Assertions.assertEquals(List.of(fast), result);
+				Assertions.assertEquals(ProviderEvaluation.Outcome.TIMED_OUT, evaluations.getLast().outcome());
+				Assertions.assertEquals(Unchecked.class.getName(), evaluations.getLast().implementationName());
+			} finally {
+				System.clearProperty(IntegrationsLoader.PROVIDER_TIMEOUT_KEY);
+				IntegrationsLoader.removeDiscoveryListener(listener);
+			}
+		}
+
+		@Test
+		@DisplayName("providers failing within the configured time budget are reported as failed")
+		public void testProviderTimeoutFailure() {
+			var fast = new Fast();
+			var failingProvider = provider(new Unchecked());
+			Mockito.doThrow(new IllegalStateException("broken")).when(failingProvider).get();
+			var loader = serviceLoader(Service.class, List.of(failingProvider, provider(fast)));
+			var evaluations = new CopyOnWriteArrayList<ProviderEvaluation>();
+			DiscoveryListener listener = evaluations::add;
+			IntegrationsLoader.addDiscoveryListener(listener);
+			System.setProperty(IntegrationsLoader.PROVIDER_TIMEOUT_KEY, "5000");
+			try {
+				var result = IntegrationsLoader.loadAll(loader, Service.class).toList();
+
+				Assertions.assertEquals(List.of(fast), result);
+				Assertions.assertEquals(ProviderEvaluation.Outcome.FAILED, evaluations.getLast().outcome());
+				Assertions.assertEquals(Unchecked.class.getName(), evaluations.getLast().implementationName());
+			} finally {
+				System.clearProperty(IntegrationsLoader.PROVIDER_TIMEOUT_KEY);
+				IntegrationsLoader.removeDiscoveryListener(listener);
+			}
+		}
+
+	}
+
+	@Nested
+	@DisplayName("lazy evaluation")
+	public class LazyEvaluation {
+
+		public interface Service {}
+
+		@Priority(10)
+		public static class High implements Service {}
+
+		@Priority(5)
+		@CheckAvailability
+		public static class Unavailable implements Service {
+			@CheckAvailability
+			public static boolean test() {
+				return false;
+			}
+		}
+
+		public static class Low implements Service {}
+
+		@Test
+		@DisplayName("lower priority providers are not instantiated when only the first one is requested")
+		public void testShortCircuit() {
+			var high = new High();
+			var lowProvider = provider(new Low());
+			var loader = serviceLoader(Service.class, List.of(lowProvider, provider(new Unavailable()), provider(high)));
+
+			var result = IntegrationsLoader.loadAll(loader, Service.class).findFirst();
+
+			Assertions.assertEquals(Optional.of(high), result);
+			Mockito.verify(lowProvider, Mockito.never()).get();
+		}
+
+		@Test
+		@DisplayName("unavailable providers are skipped")
+		public void testSkipUnavailable() {
+			var low = new Low();
+			var unavailableProvider = provider(new Unavailable());
+			var loader = serviceLoader(Service.class, List.of(provider(low), unavailableProvider));
+
+			var result = IntegrationsLoader.loadAll(loader, Service.class).toList();
+
+			Assertions.assertEquals(List.of(low), result);
+			Mockito.verify(unavailableProvider, Mockito.never()).get();
+		}
+
+	}
+
+	@Nested
+	@DisplayName("provider handles")
+	public class ProviderHandles {
+
+		public interface Service {}
+
+		@Priority(10)
+		@org.cryptomator.integrations.common.DisplayName("Named")
+		public static class Named implements Service {}
+
+		@CheckAvailability
+		public static class Unavailable implements Service {
+			@CheckAvailability
+			public static boolean test() {
+				return false;
+			}
+		}
+
+		@Test
+		@DisplayName("handles expose metadata without instantiating providers")
+		public void testMetadata() {
+			var namedProvider = provider(new Named());
+			var unavailableProvider = provider(new Unavailable());
+			var loader = serviceLoader(Service.class, List.of(unavailableProvider, namedProvider));
+
+			var handles = IntegrationsLoader.loadAllLazy(loader, Service.class);
+
+			Assertions.assertEquals(2, handles.size());
+			Assertions.assertEquals(Named.class, handles.get(0).type());
+			Assertions.assertEquals(10, handles.get(0).priority());
+			Assertions.assertEquals(Optional.of("Named"), handles.get(0).displayName());
+			Assertions.assertTrue(handles.get(0).isAvailable());
+			Assertions.assertEquals(Unavailable.class, handles.get(1).type());
+			Assertions.assertEquals(Optional.empty(), handles.get(1).displayName());
+			Assertions.assertFalse(handles.get(1).isAvailable());
+			Mockito.verify(namedProvider, Mockito.never()).get();
+			Mockito.verify(unavailableProvider, Mockito.never()).get();
+		}
+
+		@Test
+		@DisplayName("get() instantiates available providers once")
+		public void testGet() {
+			var named = new Named();
+			var namedProvider = provider(named);
+			var unavailableProvider = provider(new Unavailable());
+			var loader = serviceLoader(Service.class, List.of(unavailableProvider, namedProvider));
+
+			var handles = IntegrationsLoader.loadAllLazy(loader, Service.class);
+
+			Assertions.assertEquals(Optional.of(named), handles.get(0).get());
+			Assertions.assertEquals(Optional.of(named), handles.get(0).get());
+			Assertions.assertEquals(Optional.empty(), handles.get(1).get());
+			Mockito.verify(namedProvider, Mockito.times(1)).get();
+			Mockito.verify(unavailableProvider, Mockito.never()).get();
+		}
+
+	}
+
+	@Nested
+	@DisplayName("discovery listeners")
+	public class DiscoveryListeners {
+
+		public interface Service {}
+
+		@Priority(10)
+		public static class Available implements Service {}
+
+		@CheckAvailability
+		public static class Unavailable implements Service {
+			@CheckAvailability
+			public boolean test() {
+				return false;
+			}
+		}
+
+		@OperatingSystem(OperatingSystem.Value.UNKNOWN)
+		public static class Unsupported implements Service {}
+
+		private final List<ProviderEvaluation> evaluations = new CopyOnWriteArrayList<>();
+		private final DiscoveryListener listener = evaluations::add;
+
+		@BeforeEach
+		public void setup() {
+			IntegrationsLoader.addDiscoveryListener(listener);
+		}
+
+		@AfterEach
+		public void tearDown() {
+			IntegrationsLoader.removeDiscoveryListener(listener);
+		}
+
+		@Test
+		@DisplayName("listeners get notified about each evaluated candidate")
+		public void testListenerNotified() {
+			var loader = serviceLoader(Service.class, List.of(provider(new Unsupported()), provider(new Unavailable()), provider(new Available())));
+
+			IntegrationsLoader.loadAll(loader, Service.class).toList();
+
+			Assertions.assertEquals(3, evaluations.size());
+			Assertions.assertEquals(Available.class.getName(), evaluations.get(0).implementationName());
+			Assertions.assertEquals(ProviderEvaluation.Outcome.AVAILABLE, evaluations.get(0).outcome());
+			Assertions.assertEquals(10, evaluations.get(0).priority());
+			Assertions.assertEquals(Service.class, evaluations.get(0).service());
+			Assertions.assertEquals(ProviderEvaluation.Outcome.UNSUPPORTED_OPERATING_SYSTEM, evaluations.get(1).outcome());
+			Assertions.assertEquals(Duration.ZERO, evaluations.get(1).instantiation());
+			Assertions.assertEquals(ProviderEvaluation.Outcome.FAILED_INSTANCE_CHECK, evaluations.get(2).outcome());
+		}
+
+	}
+
+	@Nested
+	@DisplayName("asynchronous loading")
+	public class AsyncLoading {
+
+		@BeforeEach
+		@AfterEach
+		public void invalidateCache() {
+			IntegrationsLoader.invalidateCache();
+		}
+
+		@Test
+		@DisplayName("loadAsync completes with empty result if no provider is found")
+		public void testLoadAsync() {
+			var result = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> IntegrationsLoader.loadAsync(RevealPathService.class).get());
+
+			Assertions.assertEquals(Optional.empty(), result);
+		}
+
+		@Test
+		@DisplayName("warmUp populates the cache of all used services")
+		public void testWarmUp() {
+			Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> IntegrationsLoader.warmUp().get());
+
+			Assertions.assertTrue(ProviderRegistry.isCached(RevealPathService.class, ClassLoaderFactory.sharedForPluginDir(RevealPathService.class)));
+			Assertions.assertTrue(ProviderRegistry.isCached(MountService.class, ClassLoaderFactory.sharedForPluginDir(MountService.class)));
+		}
+
+		@Test
+		@DisplayName("concurrent lookups are cached separately from sequential ones")
+		public void testConcurrentCacheVariant() {
+			var classLoader = ClassLoaderFactory.sharedForPluginDir(RevealPathService.class);
+			IntegrationsLoader.loadAll(RevealPathService.class).toList();
+
+			Assertions.assertTrue(ProviderRegistry.isCached(RevealPathService.class, classLoader));
+			Assertions.assertFalse(ProviderRegistry.isCached(RevealPathService.class, classLoader, IntegrationsLoader.CONCURRENT_DISCOVERY));
+
+			IntegrationsLoader.loadAllConcurrently(RevealPathService.class, Duration.ofSeconds(1)).toList();
+
+			Assertions.assertTrue(ProviderRegistry.isCached(RevealPathService.class, classLoader, IntegrationsLoader.CONCURRENT_DISCOVERY));
+		}
+
+	}
+
+	@Nested
+	@DisplayName("plugin class loader")
+	public class PluginClassLoader {
+
+		private static final String SERVICE = RevealPathService.class.getName();
+		private static final String FOO = "com.example.Foo";
+
+		private Path pluginDir;
+
+		@BeforeEach
+		public void setup(@TempDir Path tmpDir) throws IOException {
+			var classesDir = TestPlugins.compile(tmpDir.resolve("build"), Map.of(FOO, """
+					package com.example;
+
+					public class Foo implements org.cryptomator.integrations.revealpath.RevealPathService {
+						public void reveal(java.nio.file.Path p) {}
+						public boolean isSupported() { return true; }
+					}
+					"""));
+			pluginDir = tmpDir.resolve("plugins");
+			TestPlugins.buildJar(pluginDir.resolve("foo/foo.jar"), classesDir, List.of(FOO), Map.of(SERVICE, FOO));
+			System.setProperty("cryptomator.pluginDir", pluginDir.toString());
+			IntegrationsLoader.invalidateCache();
+		}
+
+		@AfterEach
+		public void tearDown() {
+			System.clearProperty("cryptomator.pluginDir");
+			IntegrationsLoader.invalidateCache();
+		}
+
+		private void changePluginDir() throws IOException {
+			TestPlugins.buildJar(pluginDir.resolve("bar/bar.jar"), pluginDir, List.of(), Map.of());
+			ClassLoaderFactory.acquireForPluginDir().close(); // replaces the shared class loader
+		}
+
+		@Test
+		@DisplayName("uncached lookups keep their class loader open until consumed")
+		public void testLoadAllUncachedAfterChange() throws IOException {
+			var providers = IntegrationsLoader.loadAllUncached(RevealPathService.class);
+			changePluginDir();
+
+			var plugin = providers.filter(p -> p.getClass().getName().equals(FOO)).findAny();
+
+			Assertions.assertTrue(plugin.isPresent());
+			Assertions.assertNotNull(plugin.get().getClass().getClassLoader().getResource("META-INF/services/" + SERVICE));
+		}
+
+		@Test
+		@DisplayName("cached providers keep their class loader open after the cache got invalidated")
+		public void testLoadAllAfterInvalidation() throws IOException {
+			var plugin = IntegrationsLoader.loadAll(RevealPathService.class).filter(p -> p.getClass().getName().equals(FOO)).findAny().orElseThrow();
+			IntegrationsLoader.invalidateCache();
+			changePluginDir();
+
+			var reloaded = IntegrationsLoader.loadAll(RevealPathService.class).filter(p -> p.getClass().getName().equals(FOO)).findAny().orElseThrow();
+
+			Assertions.assertNotSame(plugin.getClass(), reloaded.getClass());
+			Assertions.assertNotNull(plugin.getClass().getClassLoader().getResource("META-INF/services/" + SERVICE));
+		}
+
+		@Test
+		@DisplayName("describe() reports the cached discovery regardless of uncached lookups")
+		public void testDescribe() {
+			var cached = IntegrationsLoader.loadAll(RevealPathService.class).map(p -> p.getClass().getName()).collect(Collectors.toSet());
+			IntegrationsLoader.loadAllUncached(RevealPathService.class).toList();
+			IntegrationsLoader.loadAllLazy(RevealPathService.class);
+
+			var report = IntegrationsLoader.describe(RevealPathService.class);
+
+			var foo = report.evaluations().stream().filter(e -> e.implementationName().equals(FOO)).toList();
+			Assertions.assertEquals(RevealPathService.class, report.service());
+			Assertions.assertEquals(1, foo.size());
+			Assertions.assertEquals(ProviderEvaluation.Outcome.AVAILABLE, foo.getFirst().outcome());
+			Assertions.assertEquals(cached, report.evaluations().stream().filter(e -> e.outcome() == ProviderEvaluation.Outcome.AVAILABLE).map(ProviderEvaluation::implementationName).collect(Collectors.toSet()));
+		}
+
+	}
+
+}
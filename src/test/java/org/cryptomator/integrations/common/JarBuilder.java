@@ -23,6 +23,11 @@ public class JarBuilder implements AutoCloseable {
 		return new JarBuilder(new JarOutputStream(out));
 	}
 
+	public JarBuilder withManifestAttribute(String name, String value) {
+		manifest.getMainAttributes().putValue(name, value);
+		return this;
+	}
+
 	public void addFile(String path, InputStream content) throws IOException {
 		jos.putNextEntry(new JarEntry(path));
 		content.transferTo(jos);
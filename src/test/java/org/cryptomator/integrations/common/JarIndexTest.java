@@ -0,0 +1,161 @@
+package org.cryptomator.integrations.common;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.ToolProvider;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+public class JarIndexTest {
+
+	private Path tmpDir;
+	private List<ClassLoaderFactory.JarStamp> jars;
+
+	@BeforeEach
+	public void setup(@TempDir Path tmpDir) throws IOException {
+		this.tmpDir = tmpDir;
+		var srcFile = Files.writeString(tmpDir.resolve("Foo.java"), "package com.example.a; public class Foo {}");
+		Assertions.assertEquals(0, ToolProvider.getSystemJavaCompiler().run(null, null, null, "-d", tmpDir.resolve("classes").toString(), srcFile.toString()));
+		try (var out = Files.newOutputStream(tmpDir.resolve("a.jar"));
+			 var jar = JarBuilder.withTarget(out);
+			 var clazz = Files.newInputStream(tmpDir.resolve("classes/com/example/a/Foo.class"))) {
+			jar.addFile("com/example/a/foo.txt", new ByteArrayInputStream("a".getBytes()));
+			jar.addFile("com/example/shared/bar.txt", new ByteArrayInputStream("a".getBytes()));
+			jar.addFile("com/example/a/Foo.class", clazz);
+		}
+		try (var out = Files.newOutputStream(tmpDir.resolve("b.jar"));
+			 var jar = JarBuilder.withTarget(out)) {
+			jar.addFile("com/example/b/foo.txt", new ByteArrayInputStream("b".getBytes()));
+			jar.addFile("com/example/shared/bar.txt", new ByteArrayInputStream("b".getBytes()));
+			jar.addFile("com/example/b/with space.txt", new ByteArrayInputStream("b".getBytes()));
+		}
+		jars = List.of(stamp(tmpDir.resolve("a.jar")), stamp(tmpDir.resolve("b.jar")));
+	}
+
+	private static ClassLoaderFactory.JarStamp stamp(Path path) throws IOException {
+		return ClassLoaderFactory.JarStamp.of(path, Files.readAttributes(path, BasicFileAttributes.class));
+	}
+
+	@Test
+	@DisplayName("maps directories to first jar containing them")
+	public void testLookup() {
+		var index = JarIndex.build(jars);
+
+		Assertions.assertEquals(0, index.lookup("com/example/a"));
+		Assertions.assertEquals(1, index.lookup("com/example/b"));
+		Assertions.assertEquals(0, index.lookup("com/example/shared"));
+		Assertions.assertEquals(-1, index.lookup("com/example"));
+		Assertions.assertEquals(-1, index.lookup("META-INF"));
+	}
+
+	@Test
+	@DisplayName("index file is reused until jars change")
+	public void testPersistence() throws IOException {
+		var file = tmpDir.resolve("index/jars.idx");
+
+		var first = JarIndex.loadOrBuild(file, jars);
+		var modified = Files.getLastModifiedTime(file);
+		var second = JarIndex.loadOrBuild(file, jars);
+		var unchanged = Files.getLastModifiedTime(file);
+		Files.setLastModifiedTime(file, FileTime.fromMillis(0));
+		var third = JarIndex.loadOrBuild(file, jars.reversed());
+
+		Assertions.assertEquals(modified, unchanged);
+		Assertions.assertEquals(1, second.lookup("com/example/b"));
+		Assertions.assertEquals(first.size(), second.size());
+		Assertions.assertNotEquals(0, Files.getLastModifiedTime(file).toMillis());
+		Assertions.assertEquals(0, third.lookup("com/example/b"));
+	}
+
+	@Test
+	@DisplayName("corrupt index file is replaced")
+	public void testCorruptFile() throws IOException {
+		var file = tmpDir.resolve("jars.idx");
+		Files.write(file, new byte[]{1, 2, 3});
+
+		var index = JarIndex.loadOrBuild(file, jars);
+
+		Assertions.assertEquals(1, index.lookup("com/example/b"));
+	}
+
+	@Nested
+	@DisplayName("IndexedClassLoader")
+	public class ClassLoading {
+
+		private IndexedClassLoader classLoader;
+
+		@BeforeEach
+		public void setup() throws IOException {
+			var urls = jars.stream().map(ClassLoaderFactory.JarStamp::path).map(ClassLoaderFactory::toUrl).toArray(URL[]::new);
+			classLoader = new IndexedClassLoader(urls, ClassLoader.getPlatformClassLoader(), JarIndex.build(jars));
+		}
+
+		@Test
+		@DisplayName("finds resources via index")
+		public void testFindResource() throws IOException {
+			try (var cl = classLoader;
+				 var in = cl.getResourceAsStream("com/example/b/foo.txt");
+				 var shared = cl.getResourceAsStream("com/example/shared/bar.txt");
+				 var withSpace = cl.getResourceAsStream("com/example/b/with space.txt")) {
+				Assertions.assertArrayEquals("b".getBytes(), in.readAllBytes());
+				Assertions.assertArrayEquals("a".getBytes(), shared.readAllBytes());
+				Assertions.assertArrayEquals("b".getBytes(), withSpace.readAllBytes());
+				Assertions.assertNull(cl.getResource("com/example/b/missing.txt"));
+				Assertions.assertNotNull(cl.getResource("META-INF/MANIFEST.MF")); // not indexed
+			}
+		}
+
+		@Test
+		@DisplayName("defines classes via index")
+		public void testFindClass() throws Exception {
+			try (var cl = classLoader) {
+				var clazz = cl.loadClass("com.example.a.Foo");
+
+				Assertions.assertSame(cl, clazz.getClassLoader());
+				Assertions.assertEquals("com.example.a", clazz.getPackageName());
+				Assertions.assertNotNull(clazz.getProtectionDomain().getCodeSource());
+				Assertions.assertThrows(ClassNotFoundException.class, () -> cl.loadClass("com.example.b.Missing"));
+			}
+		}
+
+		@Test
+		@DisplayName("defines versioned classes of multi-release jars")
+		public void testFindVersionedClass() throws Exception {
+			var compiler = ToolProvider.getSystemJavaCompiler();
+			var baseSrc = Files.writeString(Files.createDirectories(tmpDir.resolve("mr/base")).resolve("Bar.java"), "package com.example.mr; public class Bar { public String toString() { return \"base\"; } }");
+			var versionedSrc = Files.writeString(Files.createDirectories(tmpDir.resolve("mr/versioned")).resolve("Bar.java"), "package com.example.mr; public class Bar { public String toString() { return \"versioned\"; } }");
+			Assertions.assertEquals(0, compiler.run(null, null, null, "-d", tmpDir.resolve("mr/base").toString(), baseSrc.toString()));
+			Assertions.assertEquals(0, compiler.run(null, null, null, "-d", tmpDir.resolve("mr/versioned").toString(), versionedSrc.toString()));
+			var mrJar = tmpDir.resolve("mr.jar");
+			try (var out = Files.newOutputStream(mrJar);
+				 var jar = JarBuilder.withTarget(out).withManifestAttribute("Multi-Release", "true");
+				 var base = Files.newInputStream(tmpDir.resolve("mr/base/com/example/mr/Bar.class"));
+				 var versioned = Files.newInputStream(tmpDir.resolve("mr/versioned/com/example/mr/Bar.class"))) {
+				jar.addFile("com/example/mr/Bar.class", base);
+				jar.addFile("META-INF/versions/9/com/example/mr/Bar.class", versioned);
+			}
+			var mrJars = List.of(stamp(mrJar));
+			var urls = new URL[]{ClassLoaderFactory.toUrl(mrJar)};
+
+			try (var cl = new IndexedClassLoader(urls, ClassLoader.getPlatformClassLoader(), JarIndex.build(mrJars))) {
+				var clazz = cl.loadClass("com.example.mr.Bar");
+
+				Assertions.assertSame(cl, clazz.getClassLoader());
+				Assertions.assertEquals("versioned", clazz.getConstructor().newInstance().toString());
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,58 @@
+package org.cryptomator.integrations.common;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+
+public class NamedServiceProviderTest {
+
+	@LocalizedDisplayName(bundle = "org.cryptomator.integrations.common.TestNames", key = "name")
+	@org.cryptomator.integrations.common.DisplayName("Fallback")
+	private static class Localized implements NamedServiceProvider {}
+
+	@LocalizedDisplayName(bundle = "org.cryptomator.integrations.common.TestNames", key = "missing")
+	@org.cryptomator.integrations.common.DisplayName("Fallback")
+	private static class MissingKey implements NamedServiceProvider {}
+
+	private static class Unnamed implements NamedServiceProvider {}
+
+	private Locale defaultLocale;
+
+	@BeforeEach
+	public void setup() {
+		defaultLocale = Locale.getDefault();
+		Locale.setDefault(Locale.ROOT);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		Locale.setDefault(defaultLocale);
+	}
+
+	@Test
+	public void testFallbacks() {
+		Assertions.assertEquals("Fallback", new MissingKey().getName());
+		Assertions.assertEquals(Unnamed.class.getName(), new Unnamed().getName());
+	}
+
+	@Test
+	public void testLocaleChange() {
+		var provider = new Localized();
+		Assertions.assertEquals("Default", provider.getName());
+
+		Locale.setDefault(Locale.GERMAN);
+		Assertions.assertEquals("Deutsch", provider.getName());
+
+		Locale.setDefault(Locale.ROOT);
+		Assertions.assertEquals("Default", provider.getName());
+	}
+
+	@Test
+	public void testCached() {
+		Assertions.assertSame(new Localized().getName(), new Localized().getName());
+	}
+
+}
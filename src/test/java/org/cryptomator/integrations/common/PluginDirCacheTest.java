@@ -0,0 +1,112 @@
+package org.cryptomator.integrations.common;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+import javax.tools.ToolProvider;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class PluginDirCacheTest {
+
+	private Path jarPath;
+	private Path cacheFile;
+
+	@BeforeEach
+	public void setup(@TempDir Path tmpDir) throws IOException {
+		jarPath = tmpDir.resolve("foo.jar");
+		try (var out = Files.newOutputStream(jarPath);
+			 var jar = JarBuilder.withTarget(out)) {
+			jar.addFile("META-INF/services/java.lang.Runnable", new ByteArrayInputStream("com.example.Foo".getBytes()));
+			jar.addFile("META-INF/services/nested/ignored", new ByteArrayInputStream(new byte[0]));
+			jar.addFile("foo.properties", new ByteArrayInputStream("foo = 42".getBytes()));
+		}
+		cacheFile = tmpDir.resolve("cache/plugins.properties");
+	}
+
+	private ClassLoaderFactory.JarStamp stamp() throws IOException {
+		return ClassLoaderFactory.JarStamp.of(jarPath, Files.readAttributes(jarPath, BasicFileAttributes.class));
+	}
+
+	@Test
+	@DisplayName("readServices lists META-INF/services entries")
+	public void testReadServices() {
+		Assertions.assertEquals(Set.of("java.lang.Runnable"), PluginDirCache.readServices(jarPath));
+	}
+
+	@Test
+	@DisplayName("readServices lists provides clauses of module-info.class")
+	public void testReadServicesFromModuleInfo(@TempDir Path tmpDir) throws IOException {
+		var srcDir = Files.createDirectories(tmpDir.resolve("src/com/example"));
+		var outDir = Files.createDirectories(tmpDir.resolve("out"));
+		Files.writeString(srcDir.resolve("Foo.java"), "package com.example; public class Foo implements Runnable { public void run() {} }");
+		Files.writeString(srcDir.resolve("../../module-info.java"), "module com.example { provides java.lang.Runnable with com.example.Foo; }");
+		var compiler = ToolProvider.getSystemJavaCompiler();
+		try (var fileManager = compiler.getStandardFileManager(null, null, null)) {
+			var sources = fileManager.getJavaFileObjects(srcDir.resolve("Foo.java"), tmpDir.resolve("src/module-info.java"));
+			var task = compiler.getTask(null, fileManager, null, List.of("-d", outDir.toString(), "-proc:none"), null, sources);
+			Assertions.assertTrue(task.call());
+		}
+		var modularJar = tmpDir.resolve("modular.jar");
+		try (var out = Files.newOutputStream(modularJar);
+			 var jar = JarBuilder.withTarget(out);
+			 var moduleInfo = Files.newInputStream(outDir.resolve("module-info.class"))) {
+			jar.addFile("module-info.class", moduleInfo);
+		}
+
+		Assertions.assertEquals(Set.of("java.lang.Runnable"), PluginDirCache.readServices(modularJar));
+	}
+
+	@Test
+	@DisplayName("unchanged jars are not opened again, even after restart")
+	public void testPersistence() throws IOException {
+		var jar = stamp();
+		var first = new PluginDirCache(cacheFile).providedServices(List.of(jar));
+		Assertions.assertTrue(Files.exists(cacheFile));
+
+		try (MockedStatic<PluginDirCache> mocked = Mockito.mockStatic(PluginDirCache.class, Mockito.CALLS_REAL_METHODS)) {
+			var second = new PluginDirCache(cacheFile).providedServices(List.of(jar));
+
+			mocked.verify(() -> PluginDirCache.readServices(Mockito.any()), Mockito.never());
+			Assertions.assertEquals(first, second);
+			Assertions.assertEquals(Map.of(jar, Set.of("java.lang.Runnable")), second);
+		}
+	}
+
+	@Test
+	@DisplayName("modified jars are opened again")
+	public void testInvalidation() throws IOException {
+		var jar = stamp();
+		new PluginDirCache(cacheFile).providedServices(List.of(jar));
+		var modified = new ClassLoaderFactory.JarStamp(jar.path(), jar.size() + 1, jar.lastModified());
+
+		try (MockedStatic<PluginDirCache> mocked = Mockito.mockStatic(PluginDirCache.class, Mockito.CALLS_REAL_METHODS)) {
+			new PluginDirCache(cacheFile).providedServices(List.of(modified));
+
+			mocked.verify(() -> PluginDirCache.readServices(jarPath));
+		}
+	}
+
+	@Test
+	@DisplayName("corrupt cache file is ignored")
+	public void testCorruptCacheFile() throws IOException {
+		Files.createDirectories(cacheFile.getParent());
+		Files.writeString(cacheFile, "version=1\n" + jarPath.toString().replace("\\", "\\\\").replace(":", "\\:") + "=garbage\n");
+
+		var result = new PluginDirCache(cacheFile).providedServices(List.of(stamp()));
+
+		Assertions.assertEquals(Set.of("java.lang.Runnable"), result.values().iterator().next());
+	}
+
+}
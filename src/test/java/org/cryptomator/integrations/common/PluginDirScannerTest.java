@@ -0,0 +1,90 @@
+package org.cryptomator.integrations.common;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class PluginDirScannerTest {
+
+	private Path pluginDir;
+
+	@BeforeEach
+	public void setup(@TempDir Path tmpDir) throws IOException {
+		Files.createDirectories(tmpDir.resolve("b/c/d"));
+		Files.createDirectories(tmpDir.resolve("a"));
+		Files.createFile(tmpDir.resolve("z.jar"));
+		Files.createFile(tmpDir.resolve("a.txt"));
+		Files.createFile(tmpDir.resolve("b/b.jar"));
+		Files.createFile(tmpDir.resolve("a/a.jar"));
+		Files.createFile(tmpDir.resolve("b/c/d/d.jar"));
+		Files.createDirectory(tmpDir.resolve("dir.jar"));
+		this.pluginDir = tmpDir;
+	}
+
+	private List<Path> scan(PluginDirScanner scanner, Path dir) {
+		return scanner.scan(dir).stream().map(ClassLoaderFactory.JarStamp::path).map(pluginDir::relativize).toList();
+	}
+
+	@ParameterizedTest
+	@DisplayName("finds jars in deterministic order, regardless of parallelism")
+	@ValueSource(ints = {1, 4})
+	public void testOrder(int parallelism) {
+		var scanner = new PluginDirScanner(10, false, parallelism);
+
+		var result = scan(scanner, pluginDir);
+
+		Assertions.assertEquals(List.of(Path.of("a/a.jar"), Path.of("b/b.jar"), Path.of("b/c/d/d.jar"), Path.of("z.jar")), result);
+	}
+
+	@Test
+	@DisplayName("doesn't descend deeper than maxDepth")
+	public void testMaxDepth() {
+		Assertions.assertEquals(List.of(Path.of("z.jar")), scan(new PluginDirScanner(0, false, 1), pluginDir));
+		Assertions.assertEquals(List.of(Path.of("a/a.jar"), Path.of("b/b.jar"), Path.of("z.jar")), scan(new PluginDirScanner(1, false, 1), pluginDir));
+	}
+
+	@Test
+	@DisplayName("non-existing dir yields empty result")
+	public void testMissingDir() {
+		Assertions.assertEquals(List.of(), new PluginDirScanner(3, false, 1).scan(pluginDir.resolve("missing")));
+	}
+
+	@Test
+	@DisplayName("symlinks are only followed if enabled, skipping cycles")
+	@DisabledOnOs(OS.WINDOWS)
+	public void testSymlinks() throws IOException {
+		Files.createSymbolicLink(pluginDir.resolve("a/link"), pluginDir.resolve("b"));
+		Files.createSymbolicLink(pluginDir.resolve("b/c/cycle"), pluginDir.resolve("b"));
+
+		var withoutLinks = scan(new PluginDirScanner(10, false, 4), pluginDir);
+		var withLinks = scan(new PluginDirScanner(10, true, 4), pluginDir);
+
+		Assertions.assertEquals(List.of(Path.of("a/a.jar"), Path.of("b/b.jar"), Path.of("b/c/d/d.jar"), Path.of("z.jar")), withoutLinks);
+		Assertions.assertEquals(4, withLinks.size()); // each directory visited once, either directly or via link
+		Assertions.assertTrue(withLinks.containsAll(List.of(Path.of("a/a.jar"), Path.of("z.jar"))));
+	}
+
+	@Test
+	@DisplayName("symlinked jars are found, even if links are not followed")
+	@DisabledOnOs(OS.WINDOWS)
+	public void testSymlinkedJar() throws IOException {
+		Files.createSymbolicLink(pluginDir.resolve("a/linked.jar"), pluginDir.resolve("b/b.jar"));
+		Files.createSymbolicLink(pluginDir.resolve("a/broken.jar"), pluginDir.resolve("missing.jar"));
+
+		var result = scan(new PluginDirScanner(1, false, 1), pluginDir);
+
+		Assertions.assertEquals(List.of(Path.of("a/a.jar"), Path.of("a/linked.jar"), Path.of("b/b.jar"), Path.of("z.jar")), result);
+	}
+
+}
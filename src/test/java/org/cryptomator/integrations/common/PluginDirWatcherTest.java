@@ -0,0 +1,80 @@
+package org.cryptomator.integrations.common;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class PluginDirWatcherTest {
+
+	private Path pluginDir;
+	private PluginDirWatcher watcher;
+
+	@BeforeEach
+	public void setup(@TempDir Path tmpDir) throws IOException {
+		Files.createDirectory(tmpDir.resolve("sub"));
+		this.pluginDir = tmpDir;
+		System.setProperty("cryptomator.pluginDir", pluginDir.toString());
+		this.watcher = PluginDirWatcher.start();
+	}
+
+	@AfterEach
+	public void tearDown() {
+		watcher.close();
+		System.clearProperty("cryptomator.pluginDir");
+	}
+
+	private static void createJar(Path path, String service) throws IOException {
+		try (var out = Files.newOutputStream(path);
+			 var jar = JarBuilder.withTarget(out)) {
+			jar.addFile("META-INF/services/" + service, new ByteArrayInputStream("com.example.Foo".getBytes()));
+		}
+	}
+
+	@Test
+	@DisplayName("only one watcher can be active")
+	public void testSingleWatcher() {
+		Assertions.assertThrows(IllegalStateException.class, PluginDirWatcher::start);
+	}
+
+	@Test
+	@DisplayName("watched plugin dir doesn't need to be scanned")
+	public void testFingerprint() {
+		Assertions.assertTrue(PluginDirWatcher.fingerprintOf(pluginDir).isPresent());
+		Assertions.assertFalse(PluginDirWatcher.fingerprintOf(pluginDir.resolve("sub")).isPresent());
+	}
+
+	@Test
+	@DisplayName("subscribers get notified about added and removed providers")
+	public void testNotification() throws Exception {
+		var added = new CompletableFuture<Class<?>>();
+		var unrelated = new CompletableFuture<Class<?>>();
+		watcher.subscribe(Runnable.class, added::complete);
+		watcher.subscribe(AutoCloseable.class, unrelated::complete);
+
+		createJar(pluginDir.resolve("sub/foo.jar"), "java.lang.Runnable");
+
+		Assertions.assertEquals(Runnable.class, added.get(30, TimeUnit.SECONDS));
+		Assertions.assertTrue(PluginDirWatcher.fingerprintOf(pluginDir).orElseThrow().jars().stream().anyMatch(jar -> jar.path().endsWith("foo.jar")));
+		try (var lease = ClassLoaderFactory.acquireForPluginDir()) {
+			Assertions.assertSame(lease.classLoader(), lease.classLoaderFor(Runnable.class));
+		}
+
+		var removed = new CompletableFuture<Class<?>>();
+		watcher.subscribe(Runnable.class, removed::complete);
+		Files.delete(pluginDir.resolve("sub/foo.jar"));
+
+		Assertions.assertEquals(Runnable.class, removed.get(30, TimeUnit.SECONDS));
+		Assertions.assertFalse(unrelated.isDone());
+	}
+
+}
@@ -0,0 +1,120 @@
+package org.cryptomator.integrations.common;
+
+import org.cryptomator.integrations.revealpath.RevealPathService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class PluginLayersTest {
+
+	private static final String MODULE_INFO = """
+			module com.example.%s {
+				requires org.cryptomator.integrations.api;
+				%s
+				provides org.cryptomator.integrations.revealpath.RevealPathService with com.example.%s.Foo;
+			}
+			""";
+	private static final String FOO = """
+			package com.example.%s;
+
+			public class Foo implements org.cryptomator.integrations.revealpath.RevealPathService {
+				public void reveal(java.nio.file.Path p) {}
+				public boolean isSupported() { return true; }
+			}
+			""";
+
+	private Path tmpDir;
+	private Path pluginDir;
+
+	@BeforeEach
+	public void setup(@TempDir Path tmpDir) throws IOException {
+		Assumptions.assumeTrue(PluginLayersTest.class.getModule().isNamed(), "requires tests to run on the module path");
+		this.tmpDir = tmpDir;
+		this.pluginDir = Files.createDirectory(tmpDir.resolve("plugins"));
+		writeSources("missing", "module com.example.missing { exports com.example.missing; }", "package com.example.missing; public class Foo {}");
+		writeSources("good", MODULE_INFO.formatted("good", "", "good"), FOO.formatted("good"));
+		writeSources("bad", MODULE_INFO.formatted("bad", "requires com.example.missing;", "bad"), FOO.formatted("bad"));
+		compile();
+		buildJar("good", pluginDir.resolve("good/good.jar"));
+		buildJar("bad", pluginDir.resolve("bad/bad.jar")); // without com.example.missing
+	}
+
+	@AfterEach
+	public void tearDown() {
+		System.clearProperty("cryptomator.pluginDir");
+		System.clearProperty(PluginLayers.MODULE_LAYERS_KEY);
+		IntegrationsLoader.invalidateCache();
+	}
+
+	private void writeSources(String name, String moduleInfo, String foo) throws IOException {
+		var moduleDir = Files.createDirectories(tmpDir.resolve("src/com.example." + name));
+		var packageDir = Files.createDirectories(moduleDir.resolve("com/example/" + name));
+		Files.writeString(moduleDir.resolve("module-info.java"), moduleInfo);
+		Files.writeString(packageDir.resolve("Foo.java"), foo);
+	}
+
+	private void compile() throws IOException {
+		var compiler = ToolProvider.getSystemJavaCompiler();
+		try (var fileManager = compiler.getStandardFileManager(null, null, null)) {
+			var options = List.of("--module-path", System.getProperty("jdk.module.path"), "--module-source-path", tmpDir.resolve("src").toString(), //
+					"--module", "com.example.missing,com.example.good,com.example.bad", "-d", tmpDir.resolve("out").toString(), "-proc:none");
+			var task = compiler.getTask(null, fileManager, null, options, null, null);
+			Assertions.assertTrue(task.call());
+		}
+	}
+
+	private void buildJar(String name, Path jarPath) throws IOException {
+		var classesDir = tmpDir.resolve("out/com.example." + name);
+		Files.createDirectories(jarPath.getParent());
+		try (var out = Files.newOutputStream(jarPath);
+			 var jar = JarBuilder.withTarget(out);
+			 var files = Files.walk(classesDir)) {
+			var classFiles = files.filter(Files::isRegularFile).toList();
+			for (var classFile : classFiles) {
+				try (var in = Files.newInputStream(classFile)) {
+					jar.addFile(classesDir.relativize(classFile).toString().replace('\\', '/'), in);
+				}
+			}
+		}
+	}
+
+	@Test
+	@DisplayName("each plugin group gets its own layer, unresolvable groups fall back to class path")
+	public void testCreate() {
+		var jars = new PluginDirScanner(3, false, 1).scan(pluginDir);
+
+		var result = PluginLayers.create(pluginDir, jars);
+
+		Assertions.assertEquals(1, result.layers().size());
+		Assertions.assertTrue(result.layers().getFirst().findModule("com.example.good").isPresent());
+		Assertions.assertTrue(PluginLayers.provides(result.layers().getFirst(), RevealPathService.class));
+		Assertions.assertEquals(1, result.unresolved().size());
+		Assertions.assertTrue(result.unresolved().getFirst().path().endsWith("bad.jar"));
+	}
+
+	@Test
+	@DisplayName("providers in plugin layers are found by IntegrationsLoader")
+	public void testLoadAll() {
+		System.setProperty("cryptomator.pluginDir", pluginDir.toString());
+		System.setProperty(PluginLayers.MODULE_LAYERS_KEY, "true");
+		IntegrationsLoader.invalidateCache();
+
+		var providers = IntegrationsLoader.loadAll(RevealPathService.class).toList();
+
+		var plugin = providers.stream().filter(p -> p.getClass().getName().equals("com.example.good.Foo")).findAny();
+		Assertions.assertTrue(plugin.isPresent());
+		Assertions.assertEquals("com.example.good", plugin.get().getClass().getModule().getName());
+		Assertions.assertNotSame(ModuleLayer.boot(), plugin.get().getClass().getModule().getLayer());
+	}
+
+}
@@ -0,0 +1,88 @@
+package org.cryptomator.integrations.common;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class ProviderIndexProcessorTest {
+
+	private static final String SOURCE = """
+			package com.example;
+
+			import org.cryptomator.integrations.common.*;
+
+			@CheckAvailability
+			abstract class Base {
+				@CheckAvailability public static boolean inherited() { return true; }
+			}
+
+			@Priority(42)
+			@OperatingSystem(value = OperatingSystem.Value.LINUX, architecture = {OperatingSystem.Architecture.X64, OperatingSystem.Architecture.AARCH64})
+			@OperatingSystem(OperatingSystem.Value.MAC)
+			public class Foo extends Base {
+				@CheckAvailability public static boolean isSupported() { return true; }
+				@CheckAvailability public boolean isInstalled() { return true; }
+				@CheckAvailability private boolean ignored() { return true; }
+				@CheckAvailability public String alsoIgnored() { return ""; }
+
+				public static class Nested extends Base {}
+			}
+
+			class Bar {}
+			""";
+
+	private Path srcDir;
+	private Path outDir;
+
+	@BeforeEach
+	public void setup(@TempDir Path tmpDir) throws IOException {
+		srcDir = Files.createDirectories(tmpDir.resolve("src/com/example"));
+		outDir = Files.createDirectories(tmpDir.resolve("out"));
+		Files.writeString(srcDir.resolve("Foo.java"), SOURCE);
+	}
+
+	@Test
+	@DisplayName("generates index for annotated classes")
+	public void testGenerateIndex() throws IOException, URISyntaxException {
+		var apiClasses = Path.of(Priority.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+		var compiler = ToolProvider.getSystemJavaCompiler();
+		try (var fileManager = compiler.getStandardFileManager(null, null, null)) {
+			var sources = fileManager.getJavaFileObjects(srcDir.resolve("Foo.java"));
+			var options = List.of("-classpath", apiClasses.toString(), "-d", outDir.toString(), "-proc:only");
+			var task = compiler.getTask(null, fileManager, null, options, null, sources);
+			task.setProcessors(List.of(new ProviderIndexProcessor()));
+			Assertions.assertTrue(task.call());
+		}
+
+		Map<String, ProviderIndex.Entry> index;
+		try (var in = Files.newInputStream(outDir.resolve(ProviderIndex.RESOURCE_NAME))) {
+			index = ProviderIndex.parse(in);
+		}
+
+		Assertions.assertEquals(Set.of("com.example.Foo", "com.example.Foo$Nested"), index.keySet());
+		var foo = index.get("com.example.Foo");
+		Assertions.assertEquals(42, foo.priority());
+		var linux = new ProviderIndex.Platform(OperatingSystem.Value.LINUX, Set.of(OperatingSystem.Architecture.X64, OperatingSystem.Architecture.AARCH64));
+		var mac = new ProviderIndex.Platform(OperatingSystem.Value.MAC, Set.of());
+		Assertions.assertEquals(List.of(linux, mac), foo.platforms());
+		Assertions.assertEquals(List.of("inherited", "isSupported"), foo.staticChecks());
+		Assertions.assertEquals(List.of("isInstalled"), foo.instanceChecks());
+		var nested = index.get("com.example.Foo$Nested");
+		Assertions.assertEquals(Priority.DEFAULT, nested.priority());
+		Assertions.assertEquals(List.of(), nested.platforms());
+		Assertions.assertEquals(List.of("inherited"), nested.staticChecks());
+		Assertions.assertEquals(List.of(), nested.instanceChecks());
+	}
+
+}
@@ -0,0 +1,160 @@
+package org.cryptomator.integrations.common;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.ServiceConfigurationError;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+public class ProviderRegistryTest {
+
+	private final ClassLoader classLoader = ProviderRegistryTest.class.getClassLoader();
+
+	@AfterEach
+	public void tearDown() {
+		ProviderRegistry.invalidateAll();
+	}
+
+	@Test
+	@DisplayName("discovery runs only once per service and class loader")
+	public void testGetMemoizes() {
+		var counter = new AtomicInteger();
+
+		var first = ProviderRegistry.get(CharSequence.class, classLoader, () -> Stream.of("foo" + counter.incrementAndGet())).toList();
+		var second = ProviderRegistry.get(CharSequence.class, classLoader, () -> Stream.of("foo" + counter.incrementAndGet())).toList();
+
+		Assertions.assertEquals(List.of("foo1"), first);
+		Assertions.assertEquals(first, second);
+		Assertions.assertEquals(1, counter.get());
+	}
+
+	@Test
+	@DisplayName("different class loaders are cached separately")
+	public void testGetDistinguishesClassLoaders() {
+		var first = ProviderRegistry.get(CharSequence.class, classLoader, () -> Stream.of("foo")).toList();
+		var second = ProviderRegistry.get(CharSequence.class, null, () -> Stream.of("bar")).toList();
+
+		Assertions.assertEquals(List.of("foo"), first);
+		Assertions.assertEquals(List.of("bar"), second);
+	}
+
+	@Test
+	@DisplayName("different variants are cached separately")
+	public void testGetDistinguishesVariants() {
+		var first = ProviderRegistry.get(CharSequence.class, classLoader, () -> Stream.of("foo")).toList();
+		var second = ProviderRegistry.get(CharSequence.class, classLoader, "other", null, recorder -> Stream.of("bar")).toList();
+
+		Assertions.assertEquals(List.of("foo"), first);
+		Assertions.assertEquals(List.of("bar"), second);
+		ProviderRegistry.invalidate(CharSequence.class);
+		Assertions.assertFalse(ProviderRegistry.isCached(CharSequence.class, classLoader, "other"));
+	}
+
+	@Test
+	@DisplayName("invalidate(service) drops only the given service")
+	public void testInvalidate() {
+		ProviderRegistry.get(CharSequence.class, classLoader, () -> Stream.of("foo"));
+		ProviderRegistry.get(Number.class, classLoader, () -> Stream.of(42));
+
+		ProviderRegistry.invalidate(CharSequence.class);
+
+		Assertions.assertFalse(ProviderRegistry.isCached(CharSequence.class, classLoader));
+		Assertions.assertTrue(ProviderRegistry.isCached(Number.class, classLoader));
+		Assertions.assertEquals(List.of("bar"), ProviderRegistry.get(CharSequence.class, classLoader, () -> Stream.of("bar")).toList());
+	}
+
+	@Test
+	@DisplayName("failed discovery is not cached")
+	public void testFailedDiscoveryIsRetried() {
+		Assertions.assertThrows(IllegalStateException.class, () -> ProviderRegistry.get(CharSequence.class, classLoader, () -> {
+			throw new IllegalStateException("FAIL");
+		}).toList());
+
+		Assertions.assertFalse(ProviderRegistry.isCached(CharSequence.class, classLoader));
+		Assertions.assertEquals(List.of("foo"), ProviderRegistry.get(CharSequence.class, classLoader, () -> Stream.of("foo")).toList());
+	}
+
+	@Test
+	@DisplayName("discovery failing with an error is not cached")
+	public void testFailedDiscoveryWithErrorIsRetried() {
+		Supplier<Stream<CharSequence>> broken = () -> Stream.<CharSequence>of("foo").map(s -> {
+			throw new ServiceConfigurationError("FAIL");
+		});
+
+		Assertions.assertThrows(ServiceConfigurationError.class, () -> ProviderRegistry.get(CharSequence.class, classLoader, broken).toList());
+		Assertions.assertFalse(ProviderRegistry.isCached(CharSequence.class, classLoader));
+		Assertions.assertThrows(ServiceConfigurationError.class, () -> ProviderRegistry.get(CharSequence.class, classLoader, broken).toList());
+	}
+
+	@Test
+	@DisplayName("discovery advances only as far as required")
+	public void testLazyEvaluation() {
+		var counter = new AtomicInteger();
+		Supplier<Stream<CharSequence>> discovery = () -> Stream.<CharSequence>of("foo", "bar", "baz").peek(s -> counter.incrementAndGet());
+
+		var first = ProviderRegistry.get(CharSequence.class, classLoader, discovery).findFirst();
+		Assertions.assertEquals(Optional.of("foo"), first);
+		Assertions.assertEquals(1, counter.get());
+
+		var all = ProviderRegistry.get(CharSequence.class, classLoader, discovery).toList();
+		Assertions.assertEquals(List.of("foo", "bar", "baz"), all);
+		Assertions.assertEquals(3, counter.get());
+
+		ProviderRegistry.get(CharSequence.class, classLoader, discovery).toList();
+		Assertions.assertEquals(3, counter.get());
+	}
+
+	@Test
+	@DisplayName("providers already found don't wait for the discovery of further providers")
+	public void testConcurrentLookupDuringEvaluation() throws InterruptedException {
+		var evaluating = new CountDownLatch(1);
+		var proceed = new CountDownLatch(1);
+		Supplier<Stream<CharSequence>> discovery = () -> Stream.<CharSequence>of("foo", "bar").peek(s -> {
+			if (s.equals("bar")) {
+				evaluating.countDown();
+				awaitUninterruptibly(proceed);
+			}
+		});
+		ProviderRegistry.get(CharSequence.class, classLoader, discovery).findFirst();
+		var thread = Thread.ofVirtual().start(() -> ProviderRegistry.get(CharSequence.class, classLoader, discovery).toList());
+		evaluating.await();
+
+		var first = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(5), () -> ProviderRegistry.get(CharSequence.class, classLoader, discovery).findFirst());
+
+		Assertions.assertEquals(Optional.of("foo"), first);
+		proceed.countDown();
+		thread.join();
+	}
+
+	@Test
+	@DisplayName("recursive lookups during discovery fail")
+	public void testRecursiveLookup() {
+		var recursive = new AtomicReference<Throwable>();
+		Supplier<Stream<CharSequence>> discovery = () -> Stream.<CharSequence>of("foo").peek(s -> {
+			recursive.set(Assertions.assertThrows(IllegalStateException.class, () -> ProviderRegistry.get(CharSequence.class, classLoader, () -> Stream.of("bar")).toList()));
+		});
+
+		var result = ProviderRegistry.get(CharSequence.class, classLoader, discovery).toList();
+
+		Assertions.assertEquals(List.of("foo"), result);
+		Assertions.assertNotNull(recursive.get());
+	}
+
+	private static void awaitUninterruptibly(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
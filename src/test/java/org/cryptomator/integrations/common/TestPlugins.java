@@ -0,0 +1,79 @@
+package org.cryptomator.integrations.common;
+
+import org.junit.jupiter.api.Assertions;
+
+import javax.tools.ToolProvider;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Compiles plugin sources against the integrations-api and packages them as jars.
+ */
+class TestPlugins {
+
+	private TestPlugins() {
+	}
+
+	/**
+	 * Compiles the given sources.
+	 *
+	 * @param workDir Empty directory to write sources and classes to
+	 * @param sources Source code by fully qualified class name
+	 * @return The directory containing the compiled classes
+	 */
+	static Path compile(Path workDir, Map<String, String> sources) throws IOException {
+		var srcDir = workDir.resolve("src");
+		var classesDir = Files.createDirectories(workDir.resolve("classes"));
+		var files = new ArrayList<Path>();
+		for (var source : sources.entrySet()) {
+			var file = srcDir.resolve(source.getKey().replace('.', '/') + ".java");
+			Files.createDirectories(file.getParent());
+			Files.writeString(file, source.getValue());
+			files.add(file);
+		}
+		var classPath = Stream.of(System.getProperty("jdk.module.path"), System.getProperty("java.class.path")) //
+				.filter(Objects::nonNull) //
+				.reduce((a, b) -> a + File.pathSeparator + b) //
+				.orElse("");
+		var compiler = ToolProvider.getSystemJavaCompiler();
+		try (var fileManager = compiler.getStandardFileManager(null, null, null)) {
+			var options = List.of("-cp", classPath, "-d", classesDir.toString(), "-proc:none");
+			var task = compiler.getTask(null, fileManager, null, options, null, fileManager.getJavaFileObjectsFromPaths(files));
+			Assertions.assertTrue(task.call());
+		}
+		return classesDir;
+	}
+
+	/**
+	 * Packages the given classes into a jar.
+	 *
+	 * @param jar        The jar file to create
+	 * @param classesDir Directory containing the compiled classes
+	 * @param classNames Fully qualified names of the classes to add
+	 * @param services   Provider class names by service class name, added as {@code META-INF/services} entries
+	 */
+	static void buildJar(Path jar, Path classesDir, List<String> classNames, Map<String, String> services) throws IOException {
+		Files.createDirectories(jar.getParent());
+		try (var out = Files.newOutputStream(jar); var builder = JarBuilder.withTarget(out)) {
+			for (var className : classNames) {
+				var classFile = className.replace('.', '/') + ".class";
+				try (var in = Files.newInputStream(classesDir.resolve(classFile))) {
+					builder.addFile(classFile, in);
+				}
+			}
+			for (var service : services.entrySet()) {
+				builder.addFile("META-INF/services/" + service.getKey(), new ByteArrayInputStream(service.getValue().getBytes(StandardCharsets.UTF_8)));
+			}
+		}
+	}
+
+}
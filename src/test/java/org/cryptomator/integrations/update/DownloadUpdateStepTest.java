@@ -0,0 +1,296 @@
+package org.cryptomator.integrations.update;
+
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DownloadUpdateStepTest {
+
+	private static final URI SOURCE = URI.create("https://example.com/update.bin");
+	private static final String ETAG = "\"v1\"";
+
+	@TempDir
+	Path tmpDir;
+
+	private final byte[] content = new byte[100_000];
+	private final List<HttpRequest> requests = new CopyOnWriteArrayList<>();
+	private final AtomicInteger failures = new AtomicInteger();
+	private volatile boolean rangesSupported = true;
+	private volatile String etag = ETAG;
+	private volatile int reportedLength = content.length;
+	private HttpClient client;
+	private Path destination;
+
+	@BeforeEach
+	public void setup() throws IOException, InterruptedException {
+		new Random(42).nextBytes(content);
+		destination = tmpDir.resolve("update.bin");
+		client = Mockito.mock(HttpClient.class);
+		Mockito.when(client.send(Mockito.any(), Mockito.any())).thenAnswer(invocation -> respond(invocation.getArgument(0), invocation.getArgument(1)));
+	}
+
+	@Test
+	@DisplayName("download writes the file and verifies its checksum")
+	public void testDownload() throws IOException {
+		var step = step(sha256(content));
+
+		step.downloadInternal(client, HttpRequest.newBuilder(SOURCE).build());
+
+		Assertions.assertArrayEquals(content, Files.readAllBytes(destination));
+		Assertions.assertEquals(1, requests.size());
+		Assertions.assertEquals(1.0, step.preparationProgress());
+		Assertions.assertEquals(List.of(destination), listFiles());
+	}
+
+	@Test
+	@DisplayName("interrupted downloads are resumed using Range and If-Range")
+	public void testResume() throws IOException {
+		failures.set(1);
+		var step = step(sha256(content));
+
+		step.downloadInternal(client, HttpRequest.newBuilder(SOURCE).build());
+
+		Assertions.assertArrayEquals(content, Files.readAllBytes(destination));
+		Assertions.assertEquals(2, requests.size());
+		var range = requests.get(1).headers().firstValue("Range");
+		Assertions.assertTrue(range.isPresent());
+		Assertions.assertNotEquals("bytes=0-", range.get());
+		Assertions.assertEquals(Optional.of(ETAG), requests.get(1).headers().firstValue("If-Range"));
+	}
+
+	@Test
+	@DisplayName("partial downloads of a changed file are restarted")
+	public void testRestartIfChanged() throws IOException {
+		Files.write(destination, new byte[]{1, 2, 3});
+		Files.writeString(tmpDir.resolve("update.bin.download"), "validator=\"v0\"\n");
+		var step = step(sha256(content));
+
+		step.downloadInternal(client, HttpRequest.newBuilder(SOURCE).build());
+
+		Assertions.assertArrayEquals(content, Files.readAllBytes(destination));
+		Assertions.assertEquals(Optional.of("bytes=3-"), requests.getFirst().headers().firstValue("Range"));
+	}
+
+	@Test
+	@DisplayName("checksum mismatch fails without retrying")
+	public void testChecksumMismatch() {
+		var step = step(new byte[32]);
+
+		Assertions.assertThrows(IOException.class, () -> step.downloadInternal(client, HttpRequest.newBuilder(SOURCE).build()));
+
+		Assertions.assertEquals(1, requests.size());
+		Assertions.assertFalse(Files.exists(destination));
+	}
+
+	@Test
+	@DisplayName("segmented downloads request multiple ranges and verify the assembled file")
+	public void testSegmented() throws IOException {
+		var step = step(sha256(content), 4);
+
+		step.downloadInternal(client, HttpRequest.newBuilder(SOURCE).build());
+
+		Assertions.assertArrayEquals(content, Files.readAllBytes(destination));
+		Assertions.assertEquals(4, requests.size());
+		Assertions.assertEquals(Optional.of("bytes=0-24999"), requests.getFirst().headers().firstValue("Range"));
+		Assertions.assertTrue(requests.stream().allMatch(r -> r.headers().firstValue("Range").isPresent()));
+		Assertions.assertEquals(1.0, step.preparationProgress());
+	}
+
+	@Test
+	@DisplayName("segmented downloads fall back to a single connection if ranges are not supported")
+	public void testSegmentedFallback() throws IOException {
+		rangesSupported = false;
+		var step = step(sha256(content), 4);
+
+		step.downloadInternal(client, HttpRequest.newBuilder(SOURCE).build());
+
+		Assertions.assertArrayEquals(content, Files.readAllBytes(destination));
+		Assertions.assertEquals(2, requests.size());
+		Assertions.assertEquals(Optional.empty(), requests.getLast().headers().firstValue("Range"));
+	}
+
+	@Test
+	@DisplayName("segmented downloads fall back to a single connection if the file changed after the first range")
+	public void testSegmentedChanged() throws IOException, InterruptedException {
+		Mockito.doAnswer(invocation -> {
+			var response = respond(invocation.getArgument(0), invocation.getArgument(1));
+			etag = "\"v2\"";
+			return response;
+		}).when(client).send(Mockito.any(), Mockito.any());
+		var step = step(sha256(content), 4);
+
+		step.downloadInternal(client, HttpRequest.newBuilder(SOURCE).build());
+
+		Assertions.assertArrayEquals(content, Files.readAllBytes(destination));
+		Assertions.assertEquals(Optional.of(ETAG), requests.get(1).headers().firstValue("If-Range"));
+		Assertions.assertEquals(Optional.empty(), requests.getLast().headers().firstValue("Range"));
+	}
+
+	@Test
+	@DisplayName("segmented downloads fall back to a single connection if ranges report a different size")
+	public void testSegmentedSizeMismatch() throws IOException, InterruptedException {
+		Mockito.doAnswer(invocation -> {
+			var response = respond(invocation.getArgument(0), invocation.getArgument(1));
+			reportedLength = content.length + 1;
+			return response;
+		}).when(client).send(Mockito.any(), Mockito.any());
+		var step = step(sha256(content), 4);
+
+		step.downloadInternal(client, HttpRequest.newBuilder(SOURCE).build());
+
+		Assertions.assertArrayEquals(content, Files.readAllBytes(destination));
+		Assertions.assertEquals(Optional.empty(), requests.getLast().headers().firstValue("Range"));
+	}
+
+	@Test
+	@DisplayName("caller-supplied clients are used and not closed")
+	public void testCallerSuppliedClient() throws IOException, InterruptedException {
+		var step = new DownloadUpdateStep(SOURCE, destination, sha256(content), content.length, 1, client) {
+			@Override
+			public @Nullable UpdateStep nextStep() {
+				return null;
+			}
+		};
+
+		step.start();
+		Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> step.await());
+
+		Assertions.assertNull(step.downloadException);
+		Assertions.assertArrayEquals(content, Files.readAllBytes(destination));
+		Assertions.assertEquals(1, requests.size());
+		Mockito.verify(client, Mockito.never()).close();
+	}
+
+	private DownloadUpdateStep step(byte[] checksum) {
+		return step(checksum, 1);
+	}
+
+	private DownloadUpdateStep step(byte[] checksum, int connections) {
+		return new DownloadUpdateStep(SOURCE, destination, checksum, content.length, connections) {
+			@Override
+			public @Nullable UpdateStep nextStep() {
+				return null;
+			}
+		};
+	}
+
+	private List<Path> listFiles() throws IOException {
+		try (var files = Files.list(tmpDir)) {
+			return files.toList();
+		}
+	}
+
+	private static byte[] sha256(byte[] data) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(data);
+		} catch (Exception e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * Simulates a server supporting range requests, which drops the connection halfway through while {@link #failures} is positive.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> HttpResponse<T> respond(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException, InterruptedException {
+		requests.add(request);
+		var headers = new HashMap<String, List<String>>();
+		headers.put("ETag", List.of(etag));
+		var range = request.headers().firstValue("Range");
+		int status;
+		byte[] body;
+		var ifRange = request.headers().firstValue("If-Range");
+		if (rangesSupported && range.isPresent() && (ifRange.isEmpty() || ifRange.get().equals(etag))) {
+			var bounds = range.get().substring("bytes=".length()).split("-", -1);
+			int start = Integer.parseInt(bounds[0]);
+			int end = bounds[1].isEmpty() ? content.length - 1 : Integer.parseInt(bounds[1]);
+			status = 206;
+			body = Arrays.copyOfRange(content, start, end + 1);
+			headers.put("Content-Range", List.of("bytes " + start + "-" + end + "/" + reportedLength));
+		} else {
+			status = 200;
+			body = content;
+		}
+		headers.put("Content-Length", List.of(String.valueOf(body.length)));
+		var httpHeaders = HttpHeaders.of(headers, (k, v) -> true);
+
+		var subscriber = handler.apply(new HttpResponse.ResponseInfo() {
+			@Override
+			public int statusCode() {
+				return status;
+			}
+
+			@Override
+			public HttpHeaders headers() {
+				return httpHeaders;
+			}
+
+			@Override
+			public HttpClient.Version version() {
+				return HttpClient.Version.HTTP_1_1;
+			}
+		});
+		var fail = failures.getAndDecrement() > 0;
+		var limit = fail ? body.length / 2 : body.length;
+		var publisher = new SubmissionPublisher<List<ByteBuffer>>();
+		publisher.subscribe(subscriber);
+		Thread.ofVirtual().start(() -> {
+			for (int i = 0; i < limit; i += 4096) {
+				publisher.submit(List.of(ByteBuffer.wrap(body, i, Math.min(4096, limit - i)).slice()));
+			}
+			if (fail) {
+				try {
+					Thread.sleep(200); // let the client consume the data sent so far
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				publisher.closeExceptionally(new IOException("Connection reset"));
+			} else {
+				publisher.close();
+			}
+		});
+
+		T result;
+		try {
+			result = subscriber.getBody().toCompletableFuture().get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException ioe) {
+				throw ioe;
+			}
+			throw new IOException(e.getCause());
+		}
+		HttpResponse<T> response = Mockito.mock(HttpResponse.class);
+		Mockito.when(response.statusCode()).thenReturn(status);
+		Mockito.when(response.headers()).thenReturn(httpHeaders);
+		Mockito.when(response.body()).thenReturn(result);
+		Mockito.when(response.request()).thenReturn(request);
+		return response;
+	}
+
+}
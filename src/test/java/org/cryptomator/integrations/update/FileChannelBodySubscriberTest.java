@@ -0,0 +1,65 @@
+package org.cryptomator.integrations.update;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class FileChannelBodySubscriberTest {
+
+	@TempDir
+	Path tmpDir;
+
+	@Test
+	@DisplayName("buffers are written to the given position and fed into the digest")
+	public void testWrite() throws Exception {
+		var file = tmpDir.resolve("file");
+		Files.write(file, new byte[]{'x', 'x', 'x'});
+		var digest = MessageDigest.getInstance("SHA-256");
+		var counter = new LongAdder();
+
+		long written;
+		try (var ch = FileChannel.open(file, StandardOpenOption.WRITE); var publisher = new SubmissionPublisher<List<ByteBuffer>>()) {
+			var subscriber = new FileChannelBodySubscriber(ch, 3, -1, digest, counter);
+			publisher.subscribe(subscriber);
+			publisher.submit(List.of(ByteBuffer.wrap("hello ".getBytes()), ByteBuffer.wrap("world".getBytes())));
+			publisher.close();
+			written = subscriber.getBody().toCompletableFuture().get(5, TimeUnit.SECONDS);
+		}
+
+		Assertions.assertEquals(11, written);
+		Assertions.assertEquals(11, counter.sum());
+		Assertions.assertEquals("xxxhello world", Files.readString(file));
+		Assertions.assertArrayEquals(MessageDigest.getInstance("SHA-256").digest("hello world".getBytes()), digest.digest());
+	}
+
+	@Test
+	@DisplayName("receiving more bytes than the limit fails")
+	public void testLimitExceeded() throws IOException {
+		var file = tmpDir.resolve("file");
+
+		try (var ch = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE); var publisher = new SubmissionPublisher<List<ByteBuffer>>()) {
+			var subscriber = new FileChannelBodySubscriber(ch, 0, 4, null, new LongAdder());
+			publisher.subscribe(subscriber);
+			publisher.submit(List.of(ByteBuffer.wrap("hello".getBytes())));
+
+			var e = Assertions.assertThrows(ExecutionException.class, () -> subscriber.getBody().toCompletableFuture().get(5, TimeUnit.SECONDS));
+			Assertions.assertInstanceOf(IOException.class, e.getCause());
+		}
+		Assertions.assertEquals(0, Files.size(file));
+	}
+
+}